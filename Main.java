@@ -1,25 +1,126 @@
 package org.example;
 
-import java.util.LinkedList;
-import java.util.Objects;
-import java.util.Random;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 public class Main {
 
-    //Package Models -> Board, Coordinate, Food, Snake
+    //Package Models -> Board, Coordinate, Food, FreeCells, Occupancy, BitSetOccupancy, Bitboard, GameRandom, Zobrist, Snake
     public static class Board {
+        static final int MAX_CACHED_CELLS = 1 << 22; // Larger boards hand out fresh coordinates instead of holding a table
+        static final int MAX_SIZE = 46_340; // Largest size whose cell count fits in an int
         private final int size; // Store the size of the board, final ensures immutability
+        private final int[][] neighbors; // Next cell for every cell, one table per Direction, 16 bytes per cell up front
+        private Coordinate[] coordinates; // Canonical coordinate of every cell, allocated and filled on first use
 
         // Constructor to initialize the size, final modifier for clarity and performance
         public Board(int size) {
             this.size = size; // Assign the passed size to the instance variable
+            this.neighbors = buildNeighbors(size); // Precompute every step once per board
         }
 
         // Getter method to access the board size, efficient and clear naming
         public int getSize() {
             return size; // Return the stored size value
         }
+
+        // Returns the packed cell reached from the given cell in the given direction
+        public int neighbor(Direction direction, int cell) {
+            return neighbors[direction.ordinal()][cell];
+        }
+
+        // Returns the canonical coordinate of a position, the same instance on every call
+        public Coordinate at(int x, int y) {
+            if (x < 0 || x >= size || y < 0 || y >= size) {
+                throw new IllegalArgumentException("Coordinate out of range: (" + x + ", " + y + ")");
+            }
+            return at(x + y * size);
+        }
+
+        // Returns the canonical coordinate of a packed cell, the same instance on every call
+        public Coordinate at(int cell) {
+            Coordinate[] table = coordinates;
+            if (table == null) {
+                if ((long) size * size > MAX_CACHED_CELLS) {
+                    return new Coordinate(cell % size, cell / size);
+                }
+                // Boards are shared between threads, a lost race only allocates a second table, coordinates are immutable
+                table = new Coordinate[size * size];
+                coordinates = table;
+            }
+            Coordinate coordinate = table[cell];
+            if (coordinate == null) {
+                coordinate = new Coordinate(cell % size, cell / size);
+                table[cell] = coordinate;
+            }
+            return coordinate;
+        }
+
+        // Returns the shared next-cell table of a direction for tight loops, callers must not modify it
+        public int[] neighborTable(Direction direction) {
+            return neighbors[direction.ordinal()];
+        }
+
+        // Checks whether the board is small enough for one long per row
+        public boolean isBitboard() {
+            return size <= Bitboard.MAX_SIZE;
+        }
+
+        // Creates an empty occupancy set, bitboard-backed on small boards
+        public Occupancy createOccupancy() {
+            return isBitboard() ? new Bitboard(size) : new BitSetOccupancy(this);
+        }
+
+        // Builds the per-direction next-cell tables for a board of the given size
+        private static int[][] buildNeighbors(int size) {
+            int cells = size * size;
+            int[][] tables = new int[Direction.VALUES.length][cells];
+            int[] up = tables[Direction.UP.ordinal()];
+            int[] down = tables[Direction.DOWN.ordinal()];
+            int[] left = tables[Direction.LEFT.ordinal()];
+            int[] right = tables[Direction.RIGHT.ordinal()];
+            for (int y = 0; y < size; y++) {
+                int row = y * size;
+                int rowAbove = (y == 0 ? size - 1 : y - 1) * size; // Wrap from the top row to the bottom
+                int rowBelow = (y == size - 1 ? 0 : y + 1) * size; // Wrap from the bottom row to the top
+                for (int x = 0; x < size; x++) {
+                    int cell = row + x;
+                    up[cell] = rowAbove + x;
+                    down[cell] = rowBelow + x;
+                    left[cell] = row + (x == 0 ? size - 1 : x - 1); // Wrap from the left edge to the right
+                    right[cell] = row + (x == size - 1 ? 0 : x + 1); // Wrap from the right edge to the left
+                }
+            }
+            return tables;
+        }
     }
 
     public static class Coordinate {
@@ -51,257 +152,3509 @@ public class Main {
             return x == that.x && y == that.y; // Compare x and y values
         }
 
-        // Override hashCode method for proper hash code generation
+        // Override hashCode method, plain arithmetic so hashing neither allocates nor boxes
         @Override
         public int hashCode() {
-            return Objects.hash(x, y); // Generate hash code based on x and y
+            // Board coordinates fit in 16 bits, the golden-ratio multiply spreads the packed pair over every bit
+            return ((x << 16) | y) * 0x9E3779B9;
         }
     }
 
     public static class Food {
-        private Coordinate position; // Stores the position of the food
-        private static final Random random = new Random();
+        private static final int NO_CELL = -1; // Marks a food with nowhere left to spawn
+        private final Board board; // The board the food is placed on
+        private int cell = NO_CELL; // Packed cell index of the food
+        private long hash; // Zobrist key of the food cell, kept in step with it
+        private final GameRandom random; // Generator owned by the game, never shared between threads
 
-        // Constructor to initialize Food and generate a random position
-        public Food(int boardSize) {
-            generateNewPosition(boardSize); // Call method to generate a new position
+        // Constructor to initialize Food and generate a random position among the free cells
+        public Food(Board board, FreeCells freeCells, GameRandom random) {
+            this.board = board;
+            this.random = random;
+            generateNewPosition(freeCells); // Call method to generate a new position
         }
 
-        // Getter for the position of the food
+        // Getter for the position of the food, null once the board is full
         public Coordinate getPosition() {
-            return position; // Return the position of the food
+            if (cell == NO_CELL) {
+                return null;
+            }
+            return board.at(cell); // The board's canonical coordinate, no allocation
         }
 
-        // Method to generate a new random position within the board size
-        public void generateNewPosition(int boardSize) {
-            position = new Coordinate(random.nextInt(boardSize), random.nextInt(boardSize)); // Set new position within the board size
+        // Getter for the Zobrist key of the food's cell
+        public long getHash() {
+            return hash;
         }
-    }
 
-    public static class Snake {
-        private final LinkedList<Coordinate> body = new LinkedList<>(); // Stores the snake's body segments
-        private final int boardSize; // Size of the board
+        // Getter for the packed cell index of the food, -1 once the board is full
+        public int getCell() {
+            return cell;
+        }
 
-        // Constructor initializes the snake with the given initial size on a board
-        public Snake(int initialSize, int boardSize) {
-            this.boardSize = boardSize;
-            for (int i = 0; i < initialSize; i++) {
-                body.addFirst(new Coordinate(0, i)); // Start the snake at the top-left corner
+        // Method to place the food on a random free cell, returns false when no cell is free
+        public boolean generateNewPosition(FreeCells freeCells) {
+            if (freeCells.size() == 0) {
+                cell = NO_CELL;
+                hash = 0;
+                return false;
             }
+            cell = freeCells.random(random); // One draw over the free cells only
+            hash = Zobrist.food(cell);
+            return true;
         }
 
-        // Getter for the snake's body
-        public LinkedList<Coordinate> getBody() {
-            return body;
+        // Takes over the cell and generator state of a food on a board of the same size
+        public void copyFrom(Food other) {
+            cell = other.cell;
+            hash = other.hash;
+            random.setState(other.random.getState());
         }
 
-        // Getter for the snake's head
-        public Coordinate getHead() {
-            return body.getFirst(); // The first element of the list is the head
+        // Writes the food cell and the generator state
+        public void writeTo(ByteBuffer buffer) {
+            buffer.putInt(cell).putLong(random.getState());
         }
 
-        // Moves the snake in the given direction
-        public void move(Direction direction) {
-            Coordinate newHead = direction.move(getHead(), boardSize); // Calculate the new head position
-            body.addFirst(newHead); // Add the new head to the front of the body
-            body.removeLast(); // Remove the tail to maintain the size
+        // Restores the food cell and the generator state written by writeTo
+        public void readFrom(ByteBuffer buffer) {
+            check(buffer.duplicate().order(buffer.order()));
+            load(buffer);
+        }
 
-            // Check if the new head collides with the body
-            if (body.stream().skip(1).anyMatch(segment -> segment.equals(newHead))) {
-                throw new HitTrailError("Snake hit its own tail!");
+        // Validates a food written by writeTo without changing anything, returns its cell
+        private int check(ByteBuffer buffer) {
+            if (buffer.remaining() < Integer.BYTES + Long.BYTES) {
+                throw new IllegalArgumentException("Snapshot is truncated.");
             }
+            int restored = buffer.getInt();
+            if (restored < NO_CELL || restored >= board.getSize() * board.getSize()) {
+                throw new IllegalArgumentException("Food cell out of range: " + restored);
+            }
+            buffer.getLong();
+            return restored;
         }
 
-        // Grows the snake by adding a segment at the tail
-        public void grow() {
-            body.addLast(body.getLast()); // Duplicate the last segment to grow the snake
+        // Reads a food that check accepted
+        private void load(ByteBuffer buffer) {
+            cell = buffer.getInt();
+            hash = Zobrist.food(cell);
+            random.setState(buffer.getLong());
         }
     }
 
-    // Package Factory -> (BoardFactory , SnakeFactory)
-    public static class BoardFactory {
-        // Private constructor prevents instantiation
-        private BoardFactory() {
+    public static class FreeCells {
+        private static final int BLOCK_SHIFT = 12; // 4096 cells, 64 words, per counted block
+        private static final int GROUP_SHIFT = 18; // 262144 cells, 64 blocks, per counted group
+        private final int cells; // Cells on the board
+        private final long[] words; // One bit per cell, set while the cell is free
+        private final int[] blocks; // Free cells per block, lets a draw skip 4096 cells at a time
+        private final int[] groups; // Free cells per group, lets a draw skip 262144 cells at a time
+        private int count; // Number of free cells
+
+        // Constructor starts with every cell of the board free
+        public FreeCells(int cells) {
+            this.cells = cells;
+            this.words = new long[(cells + 63) >>> 6];
+            this.blocks = new int[(cells + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT];
+            this.groups = new int[(cells + (1 << GROUP_SHIFT) - 1) >>> GROUP_SHIFT];
+            freeAll();
         }
 
-        // Static method to create and return a new Board instance
-        public static Board createBoard(int size) {
-            if (size <= 0) {
-                throw new IllegalArgumentException("Board size must be positive.");
-            }
-            return new Board(size);
+        // Getter for the number of free cells
+        public int size() {
+            return count;
         }
-    }
 
-    public static class SnakeFactory {
-        // Private constructor prevents instantiation
-        private SnakeFactory() {
+        // Checks whether the given cell is free
+        public boolean isFree(int cell) {
+            return (words[cell >>> 6] & (1L << cell)) != 0;
         }
 
-        // Static method to create and return a new Snake instance
-        public static Snake createSnake(int initialSize, int boardSize) {
-            if (initialSize <= 0 || boardSize <= 0) {
-                throw new IllegalArgumentException("Size and board size must be positive.");
+        // Marks a free cell as occupied
+        public void remove(int cell) {
+            words[cell >>> 6] &= ~(1L << cell);
+            blocks[cell >>> BLOCK_SHIFT]--;
+            groups[cell >>> GROUP_SHIFT]--;
+            count--;
+        }
+
+        // Marks an occupied cell as free
+        public void add(int cell) {
+            words[cell >>> 6] |= 1L << cell;
+            blocks[cell >>> BLOCK_SHIFT]++;
+            groups[cell >>> GROUP_SHIFT]++;
+            count++;
+        }
+
+        // Picks a uniformly random free cell, the caller must ensure one exists
+        public int random(GameRandom random) {
+            return select(random.nextInt(count)); // Depends only on which cells are free, never on the order they freed up
+        }
+
+        // Returns the free cell with the given rank in increasing cell order, skipping whole groups, blocks and words
+        private int select(int rank) {
+            int group = 0;
+            while (rank >= groups[group]) {
+                rank -= groups[group++];
             }
-            return new Snake(initialSize, boardSize);
+            int block = group << (GROUP_SHIFT - BLOCK_SHIFT);
+            while (rank >= blocks[block]) {
+                rank -= blocks[block++];
+            }
+            int word = block << (BLOCK_SHIFT - 6);
+            while (rank >= Long.bitCount(words[word])) {
+                rank -= Long.bitCount(words[word++]);
+            }
+            return (word << 6) + selectBit(words[word], rank);
         }
-    }
 
-    public enum Direction {
-        UP {
-            @Override
-            public Coordinate move(Coordinate coordinate, int boardSize) {
-                // Move up: Decrease Y coordinate, wrapping around if it goes below 0
-                return new Coordinate(coordinate.getX(), (coordinate.getY() - 1 + boardSize) % boardSize);
+        // Position of the set bit with the given rank, counted from the lowest, by halving the word three times
+        static int selectBit(long bits, int rank) {
+            int offset = 0;
+            for (int width = 32; width >= 8; width >>>= 1) {
+                int low = Long.bitCount(bits & ((1L << width) - 1));
+                if (rank >= low) {
+                    rank -= low;
+                    bits >>>= width;
+                    offset += width;
+                }
             }
-        },
-        DOWN {
-            @Override
-            public Coordinate move(Coordinate coordinate, int boardSize) {
-                // Move down: Increase Y coordinate, wrapping around if it exceeds the board size
-                return new Coordinate(coordinate.getX(), (coordinate.getY() + 1) % boardSize);
+            for (; rank > 0; rank--) {
+                bits &= bits - 1; // Drop the lowest set bits until the wanted one is lowest
             }
-        },
-        LEFT {
-            @Override
-            public Coordinate move(Coordinate coordinate, int boardSize) {
-                // Move left: Decrease X coordinate, wrapping around if it goes below 0
-                return new Coordinate((coordinate.getX() - 1 + boardSize) % boardSize, coordinate.getY());
+            return offset + Long.numberOfTrailingZeros(bits);
+        }
+
+        // Takes over the free cells of an index of the same size, three array copies and no allocation
+        public void copyFrom(FreeCells other) {
+            System.arraycopy(other.words, 0, words, 0, words.length);
+            System.arraycopy(other.blocks, 0, blocks, 0, blocks.length);
+            System.arraycopy(other.groups, 0, groups, 0, groups.length);
+            count = other.count;
+        }
+
+        // Marks every cell of the board free
+        private void freeAll() {
+            Arrays.fill(words, -1L);
+            if ((cells & 63) != 0) {
+                words[words.length - 1] = (1L << cells) - 1; // Bits past the last cell are not cells
             }
-        },
-        RIGHT {
-            @Override
-            public Coordinate move(Coordinate coordinate, int boardSize) {
-                // Move right: Increase X coordinate, wrapping around if it exceeds the board size
-                return new Coordinate((coordinate.getX() + 1) % boardSize, coordinate.getY());
+            for (int block = 0; block < blocks.length; block++) {
+                blocks[block] = Math.min(1 << BLOCK_SHIFT, cells - (block << BLOCK_SHIFT));
             }
-        };
+            for (int group = 0; group < groups.length; group++) {
+                groups[group] = Math.min(1 << GROUP_SHIFT, cells - (group << GROUP_SHIFT));
+            }
+            count = cells;
+        }
+    }
 
-        // Abstract method to be implemented by each direction
-        public abstract Coordinate move(Coordinate coordinate, int boardSize);
+    public interface Occupancy {
+        // Checks whether the cell is covered
+        boolean get(int cell);
+
+        // Marks the cell as covered
+        void set(int cell);
+
+        // Marks the cell as free
+        void clear(int cell);
+
+        // Marks every cell as free
+        void clearAll();
+
+        // Number of covered cells
+        int count();
+
+        // Number of free cells reachable from the given free cell, 0 if it is covered
+        int floodCount(int start);
+
+        // Takes over the covered cells of a set created by the same board
+        void copyFrom(Occupancy other);
     }
 
-    // Package Error -> HitTrailError
-    public static class HitTrailError extends RuntimeException{
-        public HitTrailError(String message) {
-            super(message);
+    public static class BitSetOccupancy implements Occupancy {
+        private final Board board; // Supplies the neighbor tables for flood fills
+        private final BitSet bits; // One bit per board cell
+        private BitSet seen; // Scratch set of flood fills, created on the first one and reused
+        private int[] queue; // Scratch frontier of flood fills, created with seen
+
+        // Constructor creates an empty set covering every cell of the board
+        public BitSetOccupancy(Board board) {
+            this.board = board;
+            this.bits = new BitSet(board.getSize() * board.getSize());
         }
-    }
 
-    // Main Class -> Game
-    public static class Game {
-        private static Game instance; // Singleton instance of the game
-        private final Board board; // The game board
-        private final Snake snake; // The snake object
-        private final Food food; // The food object
+        @Override
+        public boolean get(int cell) {
+            return bits.get(cell);
+        }
 
-        // Private constructor to enforce singleton pattern
-        private Game(int boardSize, int initialSnakeSize) {
-            this.board = BoardFactory.createBoard(boardSize);
-            this.snake = SnakeFactory.createSnake(initialSnakeSize, boardSize);
-            this.food = new Food(boardSize);
+        @Override
+        public void set(int cell) {
+            bits.set(cell);
         }
 
-        // Singleton instance getter
-        public static Game getInstance(int boardSize, int initialSnakeSize) {
-            if (instance == null) {
-                instance = new Game(boardSize, initialSnakeSize);
-            }
-            return instance;
+        @Override
+        public void clear(int cell) {
+            bits.clear(cell);
         }
 
-        // Starts the game loop
-        public void start() {
-            Scanner scanner = new Scanner(System.in);
-            boolean isRunning = true; // Controls the game loop
+        @Override
+        public void clearAll() {
+            bits.clear();
+        }
 
-            try {
-                while (isRunning) {
-                    printBoard(); // Display the board
-                    System.out.println("Enter direction (WASD or Q to quit): ");
-                    char directionInput = scanner.next().toUpperCase().charAt(0);
+        @Override
+        public int count() {
+            return bits.cardinality();
+        }
 
-                    // Quit command
-                    if (directionInput == 'Q') {
-                        System.out.println("Game Over: You quit the game!");
-                        isRunning = false; // Exit the game loop
-                        continue;
+        @Override
+        public void copyFrom(Occupancy other) {
+            bits.clear();
+            bits.or(((BitSetOccupancy) other).bits);
+        }
+
+        // Breadth-first search over the neighbor tables
+        @Override
+        public int floodCount(int start) {
+            if (bits.get(start)) {
+                return 0;
+            }
+            if (seen == null) {
+                seen = new BitSet(board.getSize() * board.getSize());
+                queue = new int[board.getSize() * board.getSize()];
+            } else {
+                seen.clear();
+            }
+            int read = 0;
+            int write = 0;
+            queue[write++] = start;
+            seen.set(start);
+            while (read < write) {
+                int cell = queue[read++];
+                for (Direction direction : Direction.VALUES) {
+                    int next = board.neighbor(direction, cell);
+                    if (!bits.get(next) && !seen.get(next)) {
+                        seen.set(next);
+                        queue[write++] = next;
                     }
+                }
+            }
+            return write;
+        }
+    }
 
-                    Direction direction = getDirectionFromInput(directionInput);
+    public static class Bitboard implements Occupancy {
+        static final int MAX_SIZE = 64; // Widest row that fits in a long
+        private final int size; // Size of the board
+        private final long mask; // Bits of a row that map to cells
+        private final long[] words; // Bit cell & 63 of words[cell >>> 6] is set while the cell is covered, no division per access
+        private final long[] open; // Scratch rows of free cells, unpacked from the words by flood fills
+        private final long[] reach; // Scratch rows reused by flood fills
 
-                    if (direction != null) {
-                        snake.move(direction);
+        // Constructor creates an empty bitboard for a board of at most 64x64
+        public Bitboard(int size) {
+            if (size <= 0 || size > MAX_SIZE) {
+                throw new IllegalArgumentException("Bitboard size must be between 1 and " + MAX_SIZE + ".");
+            }
+            this.size = size;
+            this.mask = size == MAX_SIZE ? -1L : (1L << size) - 1;
+            this.words = new long[(size * size + 63) >>> 6];
+            this.open = new long[size];
+            this.reach = new long[size];
+        }
 
-                        // Check if the snake eats the food
-                        if (snake.getHead().equals(food.getPosition())) {
-                            snake.grow();
-                            food.generateNewPosition(board.getSize());
-                        }
-                    } else {
-                        System.out.println("Invalid input! Use W, A, S, D, or Q to quit.");
+        @Override
+        public boolean get(int cell) {
+            return (words[cell >>> 6] & (1L << cell)) != 0; // Shifts use only the low six bits of the cell
+        }
+
+        @Override
+        public void set(int cell) {
+            words[cell >>> 6] |= 1L << cell;
+        }
+
+        @Override
+        public void clear(int cell) {
+            words[cell >>> 6] &= ~(1L << cell);
+        }
+
+        @Override
+        public void clearAll() {
+            Arrays.fill(words, 0);
+        }
+
+        // One popcount per word
+        @Override
+        public int count() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // One array copy of the words
+        @Override
+        public void copyFrom(Occupancy other) {
+            System.arraycopy(((Bitboard) other).words, 0, words, 0, words.length);
+        }
+
+        // Grows the reachable set a whole row at a time with shifts until it stops changing
+        @Override
+        public int floodCount(int start) {
+            if (get(start)) {
+                return 0;
+            }
+            for (int y = 0; y < size; y++) {
+                open[y] = ~row(y) & mask;
+            }
+            Arrays.fill(reach, 0);
+            reach[start / size] = 1L << (start % size);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int y = 0; y < size; y++) {
+                    long free = open[y];
+                    long above = reach[y == 0 ? size - 1 : y - 1];
+                    long below = reach[y == size - 1 ? 0 : y + 1];
+                    long spread = (reach[y] | above | below) & free;
+                    long previous;
+                    do { // Sweep left and right along the row, wrapping at the edges
+                        previous = spread;
+                        spread = (spread | rotateRight(spread) | rotateLeft(spread)) & free;
+                    } while (spread != previous);
+                    if (spread != reach[y]) {
+                        reach[y] = spread;
+                        changed = true;
                     }
                 }
-            } catch (HitTrailError e) {
-                System.out.println("Game Over: " + e.getMessage());
             }
+            int count = 0;
+            for (long row : reach) {
+                count += Long.bitCount(row);
+            }
+            return count;
         }
 
-        // Maps user input to a Direction
-        private Direction getDirectionFromInput(char input) {
-            return switch (input) {
-                case 'W' -> Direction.UP;
-                case 'A' -> Direction.LEFT;
-                case 'S' -> Direction.DOWN;
-                case 'D' -> Direction.RIGHT;
-                default -> null; // Invalid input
-            };
+        // Covered cells of row y as bits 0 to size - 1, a row may straddle two words
+        private long row(int y) {
+            int first = y * size;
+            int offset = first & 63;
+            long bits = words[first >>> 6] >>> offset;
+            if (offset + size > 64) {
+                bits |= words[(first >>> 6) + 1] << (64 - offset);
+            }
+            return bits & mask;
         }
 
-        // Prints the game board
-        private void printBoard() {
-            int size = board.getSize();
-            char[][] boardArray = new char[size][size];
+        // Moves every bit one cell to the right (x + 1) within the row, wrapping at the edge
+        private long rotateRight(long row) {
+            return ((row << 1) | (row >>> (size - 1))) & mask;
+        }
+
+        // Moves every bit one cell to the left (x - 1) within the row, wrapping at the edge
+        private long rotateLeft(long row) {
+            return ((row >>> 1) | (row << (size - 1))) & mask;
+        }
+    }
+
+    public static class GameRandom {
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L; // Weyl sequence increment of SplitMix64
+        private long state; // The whole generator state, so it can be saved and restored
+
+        // Constructor seeds the generator, equal seeds produce equal sequences
+        public GameRandom(long seed) {
+            this.state = seed;
+        }
+
+        // Returns the next 64 random bits (SplitMix64, the algorithm behind SplittableRandom)
+        public long nextLong() {
+            long z = (state += GOLDEN_GAMMA);
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
 
-            // Initialize the board with empty spaces
-            for (int i = 0; i < size; i++) {
-                for (int j = 0; j < size; j++) {
-                    boardArray[i][j] = '.';
+        // Returns an unbiased random int in [0, bound) using multiply-and-shift instead of division
+        public int nextInt(int bound) {
+            if (bound <= 0) {
+                throw new IllegalArgumentException("Bound must be positive.");
+            }
+            long product = (nextLong() >>> 32) * bound;
+            if ((product & 0xFFFFFFFFL) < bound) {
+                long threshold = (0x1_0000_0000L - bound) % bound; // Low words below this would bias the result
+                while ((product & 0xFFFFFFFFL) < threshold) {
+                    product = (nextLong() >>> 32) * bound;
                 }
             }
+            return (int) (product >>> 32);
+        }
 
-            // Place the snake on the board
-            for (Coordinate c : snake.getBody()) {
-                boardArray[c.getY()][c.getX()] = 'S';
+        // Getter for the generator state
+        public long getState() {
+            return state;
+        }
+
+        // Restores a state previously returned by getState
+        public void setState(long state) {
+            this.state = state;
+        }
+    }
+
+    public static class Zobrist {
+        private static final long HEAD_SALT = 0x3c6ef372fe94f82bL; // Separates head keys from the other kinds
+        private static final long LINK_SALT = 0xa54ff53a5f1d36f1L; // Separates link keys from the other kinds
+        private static final long FOOD_SALT = 0x510e527fade682d1L; // Separates food keys from the other kinds
+
+        // Private constructor prevents instantiation
+        private Zobrist() {
+        }
+
+        // Key of the head standing on a cell
+        public static long head(int cell) {
+            return mix(HEAD_SALT + cell);
+        }
+
+        // Key of a segment on one cell followed, toward the head, by a segment on another (the same cell after grow())
+        public static long link(int cell, int towardHead) {
+            return mix(LINK_SALT + (((long) cell << 32) | (towardHead & 0xFFFFFFFFL)));
+        }
+
+        // Key of the food on a cell, 0 when the board is full and there is no food
+        public static long food(int cell) {
+            return cell < 0 ? 0 : mix(FOOD_SALT + cell);
+        }
+
+        // Keys are hashed on demand rather than drawn into tables, so huge boards cost no memory (SplitMix64 finalizer)
+        private static long mix(long value) {
+            long z = value * 0x9e3779b97f4a7c15L;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    public static class Snake {
+        private static final int MIN_CAPACITY = 16; // Smallest ring buffer allocated for a body
+
+        private int[] body; // Ring buffer of packed cell indices (x + y * boardSize), head first
+        private int head; // Position of the head inside the ring buffer
+        private int length; // Number of segments currently in the body
+        private final Board board; // The board the snake moves on
+        private final int boardSize; // Size of the board
+        private final Occupancy occupied; // One bit per board cell, set while a segment covers it
+        private final FreeCells freeCells; // Cells not covered by the snake, where food may spawn
+        private long hash; // Zobrist hash of the head and of every link between segments, so it fixes the body order
+
+        // Constructor initializes the snake with the given initial size on a board
+        public Snake(int initialSize, Board board) {
+            this.board = board;
+            this.boardSize = board.getSize();
+            this.body = new int[capacityFor(initialSize)];
+            this.occupied = board.createOccupancy(); // A bitboard on small boards, a BitSet otherwise
+            this.freeCells = new FreeCells(boardSize * boardSize);
+            for (int i = 0; i < initialSize; i++) {
+                int cell = i * boardSize; // Start the snake at the top-left corner, column 0
+                addFirst(cell);
+                occupy(cell);
             }
+        }
+
+        // Getter for the cells the snake does not cover
+        public FreeCells getFreeCells() {
+            return freeCells;
+        }
 
-            // Place the food on the board
-            Coordinate foodPosition = food.getPosition();
-            boardArray[foodPosition.getY()][foodPosition.getX()] = 'F';
+        // Read-only iterator over the body's packed cell indices, from head to tail
+        public PrimitiveIterator.OfInt cells() {
+            return new PrimitiveIterator.OfInt() {
+                private int index; // Offset from the head of the next segment to return
 
-            // Print the board to the console
-            for (char[] row : boardArray) {
-                for (char cell : row) {
-                    System.out.print(cell + " ");
+                @Override
+                public boolean hasNext() {
+                    return index < length;
                 }
-                System.out.println();
-            }
-            System.out.println();
+
+                @Override
+                public int nextInt() {
+                    if (index >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    return body[(head + index++) & (body.length - 1)];
+                }
+            };
         }
 
-        // Entry point of the application
-        public static void main(String[] args) {
-            Scanner scanner = new Scanner(System.in);
+        // Getter for the number of segments in the snake
+        public int getLength() {
+            return length;
+        }
 
-            // Prompt user for game settings
-            System.out.println("Enter board size: ");
-            int boardSize = scanner.nextInt();
-            System.out.println("Enter initial snake size: ");
-            int initialSnakeSize = scanner.nextInt();
+        // Getter for the packed cell index of the snake's head
+        public int getHeadCell() {
+            return body[head];
+        }
+
+        // Getter for the packed cell index of the snake's tail
+        public int getTailCell() {
+            return body[(head + length - 1) & (body.length - 1)];
+        }
+
+        // Getter for the Zobrist hash of the body, equal bodies in equal order hash equally
+        public long getHash() {
+            return hash;
+        }
+
+        // Getter for the packed cell index right behind the head, -1 for a one-segment snake
+        public int getNeckCell() {
+            return length > 1 ? body[(head + 1) & (body.length - 1)] : -1;
+        }
+
+        // Checks whether the tail cell is vacated by the next move, false while grow() left a copy of it behind
+        public boolean tailLeavesNext() {
+            return length == 1 || body[(head + length - 2) & (body.length - 1)] != getTailCell();
+        }
+
+        // Getter for the snake's head
+        public Coordinate getHead() {
+            int cell = getHeadCell();
+            return board.at(cell); // The board's canonical coordinate, no allocation
+        }
+
+        // Checks whether any segment of the snake covers the given coordinate
+        public boolean isOccupied(Coordinate coordinate) {
+            return occupied.get(coordinate.getX() + coordinate.getY() * boardSize);
+        }
+
+        // Checks whether any segment of the snake covers the given packed cell
+        public boolean isOccupied(int cell) {
+            return occupied.get(cell);
+        }
+
+        // Number of free cells reachable from the given cell, used by search to avoid dead ends
+        public int reachableFrom(int cell) {
+            return occupied.floodCount(cell);
+        }
 
-            // Initialize and start the game
-            Game game = Game.getInstance(boardSize, initialSnakeSize);
-            game.start();
+        // Moves the snake in the given direction, throwing HitTrailError if it runs into itself
+        public void move(Direction direction) {
+            if (tryMove(direction) == MoveResult.DIED) {
+                throw new HitTrailError("Snake hit its own tail!");
+            }
+        }
+
+        // Moves the snake in the given direction and reports DIED instead of throwing on a collision
+        public MoveResult tryMove(Direction direction) {
+            int newHead = direction.step(board, getHeadCell()); // Calculate the new head position
+            int tail = getTailCell();
+
+            // Segments added by grow() share the tail cell, so it only frees up once the last copy leaves
+            boolean tailLeaves = tailLeavesNext();
+
+            // Check if the new head collides with the body before changing anything, a dead snake stays as it was
+            if (occupied.get(newHead) && !(newHead == tail && tailLeaves)) {
+                return MoveResult.DIED;
+            }
+
+            removeLast(); // Remove the tail to maintain the size
+            if (tailLeaves) {
+                vacate(tail);
+            }
+            addFirst(newHead); // Add the new head to the front of the body
+            occupy(newHead);
+            return MoveResult.OK;
+        }
+
+        // Grows the snake by adding a segment at the tail
+        public void grow() {
+            addLast(getTailCell()); // Duplicate the last segment to grow the snake
+        }
+
+        // Marks a cell as covered by the snake
+        private void occupy(int cell) {
+            occupied.set(cell);
+            freeCells.remove(cell);
+        }
+
+        // Marks a cell as no longer covered by the snake
+        private void vacate(int cell) {
+            occupied.clear(cell);
+            freeCells.add(cell);
+        }
+
+        // Pushes a cell in front of the head, doubling the ring buffer when it is full
+        private void addFirst(int cell) {
+            if (length == body.length) {
+                resize();
+            }
+            if (length > 0) {
+                hash ^= Zobrist.head(body[head]) ^ Zobrist.link(body[head], cell); // The old head becomes a link
+            }
+            hash ^= Zobrist.head(cell);
+            head = (head - 1) & (body.length - 1);
+            body[head] = cell;
+            length++;
+        }
+
+        // Appends a cell behind the tail, doubling the ring buffer when it is full
+        private void addLast(int cell) {
+            if (length == body.length) {
+                resize();
+            }
+            hash ^= Zobrist.link(cell, getTailCell());
+            body[(head + length) & (body.length - 1)] = cell;
+            length++;
+        }
+
+        // Pops the tail cell off the ring buffer
+        private int removeLast() {
+            int tail = getTailCell();
+            length--;
+            if (length > 0) {
+                hash ^= Zobrist.link(tail, getTailCell());
+            } else {
+                hash ^= Zobrist.head(tail); // The tail was also the head
+            }
+            return tail;
+        }
+
+        // Doubles the ring buffer, unwrapping the body so the head sits at index 0
+        private void resize() {
+            int[] larger = new int[body.length << 1];
+            int firstPart = body.length - head; // Segments from the head up to the end of the array
+            System.arraycopy(body, head, larger, 0, firstPart);
+            System.arraycopy(body, 0, larger, firstPart, head);
+            body = larger;
+            head = 0;
+        }
+
+        // Takes over the body, occupancy and free cells of a snake on a board of the same size, allocating only to grow
+        public void copyFrom(Snake other) {
+            if (body.length < other.length) {
+                body = new int[capacityFor(other.length)];
+            }
+            int firstPart = Math.min(other.length, other.body.length - other.head); // Segments before the ring wraps
+            System.arraycopy(other.body, other.head, body, 0, firstPart);
+            System.arraycopy(other.body, 0, body, firstPart, other.length - firstPart);
+            head = 0;
+            length = other.length;
+            hash = other.hash;
+            occupied.copyFrom(other.occupied);
+            freeCells.copyFrom(other.freeCells);
+        }
+
+        // Writes the body from head to tail, the occupancy and free cells follow from it
+        public void writeTo(ByteBuffer buffer) {
+            buffer.putInt(length);
+            int firstPart = Math.min(length, body.length - head); // Segments before the ring wraps
+            buffer.asIntBuffer().put(body, head, firstPart).put(body, 0, length - firstPart);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+        }
+
+        // Restores a body written by writeTo and rebuilds the occupancy and free cells
+        public void readFrom(ByteBuffer buffer) {
+            check(buffer.duplicate().order(buffer.order()));
+            load(buffer);
+        }
+
+        // Validates a body written by writeTo without changing anything, returns its distinct cells in increasing order
+        private int[] check(ByteBuffer buffer) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new IllegalArgumentException("Snapshot is truncated.");
+            }
+            int restored = buffer.getInt();
+            if (restored <= 0 || restored > 2L * boardSize * boardSize) {
+                throw new IllegalArgumentException("Snake length out of range: " + restored);
+            }
+            if (buffer.remaining() < (long) restored * Integer.BYTES) {
+                throw new IllegalArgumentException("Snapshot is truncated.");
+            }
+            int[] distinct = new int[restored]; // Sized by the body, never by the board
+            int count = 0;
+            for (int i = 0; i < restored; i++) {
+                int cell = buffer.getInt();
+                if (cell < 0 || cell >= boardSize * boardSize) {
+                    throw new IllegalArgumentException("Body cell out of range: " + cell);
+                }
+                if (i > 0 && cell == distinct[count - 1]) {
+                    continue; // Copies left by grow(), only allowed as a run at the tail
+                }
+                if (count < i) {
+                    throw new IllegalArgumentException("Only the tail may repeat a cell.");
+                }
+                if (i > 0 && !isNeighbor(distinct[count - 1], cell)) {
+                    throw new IllegalArgumentException("Body segments are not adjacent: " + distinct[count - 1] + ", " + cell);
+                }
+                distinct[count++] = cell;
+            }
+            distinct = Arrays.copyOf(distinct, count);
+            Arrays.sort(distinct);
+            for (int i = 1; i < count; i++) {
+                if (distinct[i] == distinct[i - 1]) {
+                    throw new IllegalArgumentException("Body crosses itself at cell " + distinct[i]);
+                }
+            }
+            return distinct;
+        }
+
+        // Checks whether one step in some direction leads from a cell to the other
+        private boolean isNeighbor(int from, int to) {
+            for (Direction direction : Direction.VALUES) {
+                if (board.neighbor(direction, from) == to) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Reads a body that check accepted, occupancy and free cells are rebuilt from it in word-sized steps
+        private void load(ByteBuffer buffer) {
+            int restored = buffer.getInt();
+            if (body.length < restored) {
+                body = new int[capacityFor(restored)];
+            }
+            buffer.asIntBuffer().get(body, 0, restored);
+            buffer.position(buffer.position() + restored * Integer.BYTES);
+            head = 0;
+            length = restored;
+            occupied.clearAll();
+            freeCells.freeAll();
+            hash = Zobrist.head(body[0]);
+            occupy(body[0]);
+            for (int i = 1; i < restored; i++) {
+                hash ^= Zobrist.link(body[i], body[i - 1]);
+                if (body[i] != body[i - 1]) {
+                    occupy(body[i]);
+                }
+            }
+        }
+
+        // Number of bytes writeTo produces for the current body
+        public int serializedSize() {
+            return Integer.BYTES * (1 + length);
+        }
+
+        // Rounds a segment count up to a power-of-two ring buffer capacity
+        private static int capacityFor(int segments) {
+            return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(segments - 1, 1)) << 1);
+        }
+    }
+
+    // Package Collections -> CoordinateSet, CoordinateIntMap
+    public static class CoordinateSet {
+        private static final int EMPTY = -1; // Marks a free slot, packed cells are never negative
+        private final int boardSize; // Size of the board, packs coordinates into cells
+        private int[] slots; // Packed cells by slot, EMPTY where free, probed linearly
+        private int shift; // Turns a 32-bit product into a slot index
+        private int size; // Number of cells in the set
+
+        // Constructor creates an empty set for coordinates of the board
+        public CoordinateSet(Board board) {
+            this(board, 16);
+        }
+
+        // Constructor creates an empty set sized to hold the expected number of cells without growing
+        public CoordinateSet(Board board, int expected) {
+            this.boardSize = board.getSize();
+            allocate(capacityFor(expected));
+        }
+
+        // Adds a packed cell, returns false if it was already present
+        public boolean add(int cell) {
+            if (cell < 0) {
+                throw new IllegalArgumentException("Cell must not be negative: " + cell);
+            }
+            int mask = slots.length - 1;
+            int index = home(cell);
+            while (slots[index] != EMPTY) {
+                if (slots[index] == cell) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            slots[index] = cell;
+            if (++size * 2 > slots.length) { // Keep probes short by staying at most half full
+                rehash(slots.length << 1);
+            }
+            return true;
+        }
+
+        // Adds a coordinate, returns false if it was already present
+        public boolean add(Coordinate coordinate) {
+            return add(coordinate.getX() + coordinate.getY() * boardSize);
+        }
+
+        // Checks whether the packed cell is in the set
+        public boolean contains(int cell) {
+            return find(cell) >= 0;
+        }
+
+        // Checks whether the coordinate is in the set
+        public boolean contains(Coordinate coordinate) {
+            return contains(coordinate.getX() + coordinate.getY() * boardSize);
+        }
+
+        // Removes a packed cell, returns false if it was absent
+        public boolean remove(int cell) {
+            int index = find(cell);
+            if (index < 0) {
+                return false;
+            }
+            // Backward-shift deletion: pull later cells of the probe run into the hole, no tombstones are left
+            int mask = slots.length - 1;
+            int hole = index;
+            for (int next = (hole + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+                int home = home(slots[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask)) { // The hole lies on the cell's probe path
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = EMPTY;
+            size--;
+            return true;
+        }
+
+        // Removes a coordinate, returns false if it was absent
+        public boolean remove(Coordinate coordinate) {
+            return remove(coordinate.getX() + coordinate.getY() * boardSize);
+        }
+
+        // Getter for the number of cells in the set
+        public int size() {
+            return size;
+        }
+
+        // Removes every cell, keeping the allocated slots
+        public void clear() {
+            Arrays.fill(slots, EMPTY);
+            size = 0;
+        }
+
+        // Iterator over the packed cells in slot order
+        public PrimitiveIterator.OfInt cells() {
+            return new PrimitiveIterator.OfInt() {
+                private int index = advance(0); // Next occupied slot
+
+                @Override
+                public boolean hasNext() {
+                    return index < slots.length;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (index >= slots.length) {
+                        throw new NoSuchElementException();
+                    }
+                    int cell = slots[index];
+                    index = advance(index + 1);
+                    return cell;
+                }
+
+                // First occupied slot at or after the given one
+                private int advance(int from) {
+                    while (from < slots.length && slots[from] == EMPTY) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+
+        // Slot holding the cell, -1 if absent
+        private int find(int cell) {
+            int mask = slots.length - 1;
+            for (int index = home(cell); slots[index] != EMPTY; index = (index + 1) & mask) {
+                if (slots[index] == cell) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        // First slot probed for a cell, Fibonacci hashing spreads neighboring cells apart
+        private int home(int cell) {
+            return (cell * 0x9E3779B9) >>> shift;
+        }
+
+        // Allocates the given power-of-two number of empty slots
+        private void allocate(int capacity) {
+            slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        // Smallest power-of-two slot count that keeps the expected cells at most half full
+        private static int capacityFor(int expected) {
+            return Math.max(16, Integer.highestOneBit(Math.max(expected, 1)) << 2);
+        }
+
+        // Moves every cell into a table of the given capacity
+        private void rehash(int capacity) {
+            int[] old = slots;
+            allocate(capacity);
+            size = 0;
+            for (int cell : old) {
+                if (cell != EMPTY) {
+                    add(cell);
+                }
+            }
+        }
+    }
+
+    public static class CoordinateIntMap {
+        private static final int EMPTY = -1; // Marks a free slot, packed cells are never negative
+        private final int boardSize; // Size of the board, packs coordinates into cells
+        private int[] keys; // Packed cells by slot, EMPTY where free, probed linearly
+        private int[] values; // Value of the cell in the same slot
+        private int shift; // Turns a 32-bit product into a slot index
+        private int size; // Number of cells in the map
+
+        // Constructor creates an empty map keyed by coordinates of the board
+        public CoordinateIntMap(Board board) {
+            this(board, 16);
+        }
+
+        // Constructor creates an empty map sized to hold the expected number of cells without growing
+        public CoordinateIntMap(Board board, int expected) {
+            this.boardSize = board.getSize();
+            allocate(capacityFor(expected));
+        }
+
+        // Maps a packed cell to a value, returns the previous value or the given one if the cell was absent
+        public int put(int cell, int value, int missing) {
+            if (cell < 0) {
+                throw new IllegalArgumentException("Cell must not be negative: " + cell);
+            }
+            int mask = keys.length - 1;
+            int index = home(cell);
+            while (keys[index] != EMPTY) {
+                if (keys[index] == cell) {
+                    int previous = values[index];
+                    values[index] = value;
+                    return previous;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = cell;
+            values[index] = value;
+            if (++size * 2 > keys.length) { // Keep probes short by staying at most half full
+                rehash(keys.length << 1);
+            }
+            return missing;
+        }
+
+        // Maps a packed cell to a value
+        public void put(int cell, int value) {
+            put(cell, value, 0);
+        }
+
+        // Maps a coordinate to a value
+        public void put(Coordinate coordinate, int value) {
+            put(coordinate.getX() + coordinate.getY() * boardSize, value, 0);
+        }
+
+        // Returns the value of a packed cell, or the given one if the cell is absent
+        public int get(int cell, int missing) {
+            int index = find(cell);
+            return index < 0 ? missing : values[index];
+        }
+
+        // Returns the value of a coordinate, or the given one if the coordinate is absent
+        public int get(Coordinate coordinate, int missing) {
+            return get(coordinate.getX() + coordinate.getY() * boardSize, missing);
+        }
+
+        // Checks whether the packed cell has a value
+        public boolean containsKey(int cell) {
+            return find(cell) >= 0;
+        }
+
+        // Removes a packed cell, returns false if it was absent
+        public boolean remove(int cell) {
+            int index = find(cell);
+            if (index < 0) {
+                return false;
+            }
+            // Backward-shift deletion: pull later cells of the probe run into the hole, no tombstones are left
+            int mask = keys.length - 1;
+            int hole = index;
+            for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = home(keys[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask)) { // The hole lies on the cell's probe path
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            size--;
+            return true;
+        }
+
+        // Getter for the number of cells in the map
+        public int size() {
+            return size;
+        }
+
+        // Removes every cell, keeping the allocated slots
+        public void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        // Slot holding the cell, -1 if absent
+        private int find(int cell) {
+            int mask = keys.length - 1;
+            for (int index = home(cell); keys[index] != EMPTY; index = (index + 1) & mask) {
+                if (keys[index] == cell) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        // First slot probed for a cell, Fibonacci hashing spreads neighboring cells apart
+        private int home(int cell) {
+            return (cell * 0x9E3779B9) >>> shift;
+        }
+
+        // Allocates the given power-of-two number of empty slots
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        // Smallest power-of-two slot count that keeps the expected cells at most half full
+        private static int capacityFor(int expected) {
+            return Math.max(16, Integer.highestOneBit(Math.max(expected, 1)) << 2);
+        }
+
+        // Moves every entry into a table of the given capacity
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(capacity);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i], 0);
+                }
+            }
+        }
+    }
+
+    // Package Factory -> (BoardFactory , SnakeFactory, GameFactory)
+    public static class BoardFactory {
+        // Private constructor prevents instantiation
+        private BoardFactory() {
+        }
+
+        // Static method to create and return a new Board instance
+        public static Board createBoard(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Board size must be positive.");
+            }
+            // Cells are packed into ints and the neighbor tables cost 16 bytes per cell, 268 MB at 4096x4096
+            if (size > Board.MAX_SIZE) {
+                throw new IllegalArgumentException("Board size cannot exceed " + Board.MAX_SIZE + ", use OffHeapGame for larger boards.");
+            }
+            return new Board(size);
+        }
+    }
+
+    public static class SnakeFactory {
+        // Private constructor prevents instantiation
+        private SnakeFactory() {
+        }
+
+        // Static method to create and return a new Snake instance
+        public static Snake createSnake(int initialSize, Board board) {
+            if (initialSize <= 0) {
+                throw new IllegalArgumentException("Snake size must be positive.");
+            }
+            if (initialSize > board.getSize()) {
+                throw new IllegalArgumentException("Initial snake size cannot exceed board size.");
+            }
+            return new Snake(initialSize, board);
+        }
+    }
+
+    public static class GameFactory {
+        // Private constructor prevents instantiation
+        private GameFactory() {
+        }
+
+        // Static method to create and return a new Game on a fresh board with a random seed
+        public static Game createGame(int boardSize, int initialSnakeSize) {
+            return createGame(BoardFactory.createBoard(boardSize), initialSnakeSize);
+        }
+
+        // Static method to create and return a new Game on an existing board with a random seed
+        public static Game createGame(Board board, int initialSnakeSize) {
+            return createGame(board, initialSnakeSize, ThreadLocalRandom.current().nextLong());
+        }
+
+        // Static method to create and return a new Game on an existing board, the seed reproduces the run
+        public static Game createGame(Board board, int initialSnakeSize, long seed) {
+            if (board == null) {
+                throw new IllegalArgumentException("Board must not be null.");
+            }
+            return new Game(board, initialSnakeSize, seed);
+        }
+    }
+
+    public enum Direction {
+        UP {
+            @Override
+            public Coordinate move(Coordinate coordinate, int boardSize) {
+                // Move up: Decrease Y coordinate, wrapping around if it goes below 0
+                return new Coordinate(coordinate.getX(), (coordinate.getY() - 1 + boardSize) % boardSize);
+            }
+        },
+        DOWN {
+            @Override
+            public Coordinate move(Coordinate coordinate, int boardSize) {
+                // Move down: Increase Y coordinate, wrapping around if it exceeds the board size
+                return new Coordinate(coordinate.getX(), (coordinate.getY() + 1) % boardSize);
+            }
+        },
+        LEFT {
+            @Override
+            public Coordinate move(Coordinate coordinate, int boardSize) {
+                // Move left: Decrease X coordinate, wrapping around if it goes below 0
+                return new Coordinate((coordinate.getX() - 1 + boardSize) % boardSize, coordinate.getY());
+            }
+        },
+        RIGHT {
+            @Override
+            public Coordinate move(Coordinate coordinate, int boardSize) {
+                // Move right: Increase X coordinate, wrapping around if it exceeds the board size
+                return new Coordinate((coordinate.getX() + 1) % boardSize, coordinate.getY());
+            }
+        };
+
+        static final Direction[] VALUES = values(); // Shared copy of values() for hot loops and ordinal decoding, never modified
+
+        // Abstract method to be implemented by each direction
+        public abstract Coordinate move(Coordinate coordinate, int boardSize);
+
+        // Returns the direction that undoes this one
+        public Direction opposite() {
+            return switch (this) {
+                case UP -> DOWN;
+                case DOWN -> UP;
+                case LEFT -> RIGHT;
+                case RIGHT -> LEFT;
+            };
+        }
+
+        // Returns the packed cell reached from the given cell, read from the board's neighbor tables
+        public int step(Board board, int cell) {
+            return board.neighbor(this, cell);
+        }
+
+        // Returns the board's canonical coordinate reached from the given coordinate, allocating nothing once cached
+        public Coordinate move(Board board, Coordinate coordinate) {
+            int size = board.getSize();
+            return board.at(board.neighbor(this, coordinate.getX() + coordinate.getY() * size));
+        }
+    }
+
+    public enum MoveResult {
+        OK, // The snake moved onto an empty cell
+        ATE, // The snake moved onto the food and grew
+        DIED, // The snake ran into its own body
+        WON // The snake ate the last food and now covers the whole board
+    }
+
+    // Package Error -> HitTrailError
+    public static class HitTrailError extends RuntimeException{
+        public HitTrailError(String message) {
+            super(message);
+        }
+    }
+
+    // Main Class -> Game
+    public static class Game {
+        private final Board board; // The game board, may be shared by several games
+        private final Snake snake; // The snake object
+        private final Food food; // The food object
+        private final long seed; // Seed of the game's random generator
+        private final int initialSnakeSize; // Length of the snake when the game started
+        private boolean over; // Set once the game has ended
+        private boolean won; // Set when the game ended with the board full
+        private long tick; // Number of steps taken while the game was running
+        private long generation; // Bumped whenever copyFrom or readFrom replaces the state wholesale
+        private ReplayJournal journal; // Records every step when set
+
+        // Constructor starts an independent game on the given board, seeding its own random generator
+        public Game(Board board, int initialSnakeSize, long seed) {
+            this.board = board;
+            this.seed = seed;
+            this.initialSnakeSize = initialSnakeSize;
+            this.snake = SnakeFactory.createSnake(initialSnakeSize, board);
+            this.food = new Food(board, snake.getFreeCells(), new GameRandom(seed));
+            if (food.getCell() < 0) {
+                over = true; // The snake fills the board from the start, as on a 1x1 board
+                won = true;
+            }
+        }
+
+        // Getter for the game board
+        public Board getBoard() {
+            return board;
+        }
+
+        // Getter for the snake
+        public Snake getSnake() {
+            return snake;
+        }
+
+        // Getter for the food
+        public Food getFood() {
+            return food;
+        }
+
+        // Getter for the seed that reproduces this game
+        public long getSeed() {
+            return seed;
+        }
+
+        // Takes over the full mutable state of a game on a board of the same size, the journal is not copied
+        public void copyFrom(Game other) {
+            if (other.board.getSize() != board.getSize()) {
+                throw new IllegalArgumentException("Games must be played on boards of the same size.");
+            }
+            tick = other.tick;
+            over = other.over;
+            won = other.won;
+            food.copyFrom(other.food);
+            snake.copyFrom(other.snake);
+            generation++;
+        }
+
+        // Creates an independent game in the same state, later steps of either do not affect the other
+        public Game copy() {
+            Game copy = new Game(board, initialSnakeSize, seed);
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        // Writes the full mutable state of the game, enough to continue it exactly
+        public void writeTo(ByteBuffer buffer) {
+            buffer.putLong(tick).put((byte) (won ? 2 : over ? 1 : 0));
+            food.writeTo(buffer);
+            snake.writeTo(buffer);
+        }
+
+        // Restores state written by writeTo from a game with the same board, seed and initial size
+        public void readFrom(ByteBuffer buffer) {
+            check(buffer.duplicate().order(buffer.order())); // Throws before anything changes
+            tick = buffer.getLong();
+            byte ending = buffer.get(); // 0 running, 1 died, 2 won
+            over = ending != 0;
+            won = ending == 2;
+            food.load(buffer);
+            snake.load(buffer);
+            generation++;
+        }
+
+        // Validates state written by writeTo without changing anything
+        private void check(ByteBuffer buffer) {
+            if (buffer.remaining() < Long.BYTES + 1) {
+                throw new IllegalArgumentException("Snapshot is truncated.");
+            }
+            if (buffer.getLong() < 0) {
+                throw new IllegalArgumentException("Tick must not be negative.");
+            }
+            byte ending = buffer.get();
+            if (ending < 0 || ending > 2) {
+                throw new IllegalArgumentException("Unknown game ending: " + ending);
+            }
+            int foodCell = food.check(buffer);
+            int[] covered = snake.check(buffer);
+            if (foodCell >= 0 && Arrays.binarySearch(covered, foodCell) >= 0) {
+                throw new IllegalArgumentException("Food lies on the snake.");
+            }
+            // Food only runs out when the snake covers the board, and that is the only way to win
+            boolean full = covered.length == board.getSize() * board.getSize();
+            if ((foodCell < 0) != full || (ending == 2) != full) {
+                throw new IllegalArgumentException("Food and ending do not match the body.");
+            }
+        }
+
+        // Number of bytes writeTo produces for the current state
+        public int serializedSize() {
+            return Long.BYTES + 1 + Integer.BYTES + Long.BYTES + snake.serializedSize();
+        }
+
+        // Getter for the number of times the state was replaced by copyFrom or readFrom, steps leave it alone
+        public long getGeneration() {
+            return generation;
+        }
+
+        // Getter for the length of the snake when the game started
+        public int getInitialSnakeSize() {
+            return initialSnakeSize;
+        }
+
+        // Records every following step into the journal, pass null to stop recording
+        public void setJournal(ReplayJournal journal) {
+            this.journal = journal;
+        }
+
+        // Checks whether the game has ended, by death or by filling the board
+        public boolean isOver() {
+            return over;
+        }
+
+        // Checks whether the game ended with the snake covering the whole board
+        public boolean isWon() {
+            return won;
+        }
+
+        // Getter for the number of steps taken while the game was running
+        public long getTick() {
+            return tick;
+        }
+
+        // Zobrist hash of the position, the body in order and the food, the random generator is left out
+        public long getHash() {
+            return snake.getHash() ^ food.getHash();
+        }
+
+        // Advances the game by one tick in the given direction and reports what happened, performs no I/O
+        public MoveResult step(Direction direction) {
+            if (over) {
+                return won ? MoveResult.WON : MoveResult.DIED;
+            }
+            if (journal != null) {
+                journal.record(direction);
+            }
+            tick++;
+            if (snake.tryMove(direction) == MoveResult.DIED) {
+                over = true;
+                return MoveResult.DIED;
+            }
+
+            // Check if the snake eats the food
+            if (snake.getHeadCell() == food.getCell()) {
+                snake.grow();
+                if (!food.generateNewPosition(snake.getFreeCells())) {
+                    over = true; // No free cell is left for the next food
+                    won = true;
+                    return MoveResult.WON;
+                }
+                return MoveResult.ATE;
+            }
+            return MoveResult.OK;
+        }
+
+        // Entry point of the application
+        public static void main(String[] args) {
+            Scanner scanner = new Scanner(System.in);
+
+            // Prompt user for game settings
+            System.out.println("Enter board size: ");
+            int boardSize = scanner.nextInt();
+            System.out.println("Enter initial snake size: ");
+            int initialSnakeSize = scanner.nextInt();
+
+            // Initialize and start the game, --seed=<n> replays the same food placement
+            List<String> options = Arrays.asList(args);
+            long seed = options.stream()
+                    .filter(option -> option.startsWith("--seed="))
+                    .mapToLong(option -> Long.parseLong(option.substring("--seed=".length())))
+                    .findFirst()
+                    .orElseGet(() -> ThreadLocalRandom.current().nextLong());
+            Game game = GameFactory.createGame(BoardFactory.createBoard(boardSize), initialSnakeSize, seed);
+
+            // --ansi redraws only the cells that changed
+            Renderer renderer = options.contains("--ansi")
+                    ? new AnsiDiffRenderer(game.getBoard())
+                    : new FrameRenderer(game.getBoard());
+
+            // --record=<path> writes every move to a replay journal
+            ReplayJournal journal = null;
+            for (String option : options) {
+                if (option.startsWith("--record=")) {
+                    try {
+                        journal = ReplayJournal.create(Path.of(option.substring("--record=".length())), game);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    game.setJournal(journal);
+                }
+            }
+
+            // --realtime moves the snake at 60 ticks per second, turns are read in the background
+            if (options.contains("--realtime")) {
+                RealTimeGame realTime = new RealTimeGame(game, System.out, renderer, 60);
+                realTime.startInputReader(scanner);
+                realTime.run(Long.MAX_VALUE);
+                System.out.println("Game Over: " + (game.isWon() ? "You filled the board!"
+                        : game.isOver() ? "Snake hit its own tail!" : "You quit the game!"));
+                System.out.println("Tick jitter: " + realTime.getJitter());
+            } else {
+                new ConsoleGame(game, scanner, System.out, renderer).start();
+            }
+
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    // Package Snapshot -> GameSnapshot
+    public static class GameSnapshot {
+        static final int MAGIC = 0x534E4B53; // "SNKS"
+        static final int VERSION = 2; // Bumped whenever the layout changes
+        static final int HEADER_BYTES = 24; // magic, version, board size, initial length, seed
+
+        // Private constructor prevents instantiation
+        private GameSnapshot() {
+        }
+
+        // Number of bytes a snapshot of the game takes
+        public static int sizeOf(Game game) {
+            return HEADER_BYTES + game.serializedSize();
+        }
+
+        // Encodes the game into a new buffer, flipped and ready to read
+        public static ByteBuffer write(Game game) {
+            ByteBuffer buffer = ByteBuffer.allocate(sizeOf(game));
+            write(game, buffer);
+            return buffer.flip();
+        }
+
+        // Encodes the game at the buffer's position, little-endian so the int arrays copy straight through
+        public static void write(Game game, ByteBuffer buffer) {
+            ByteBuffer out = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION)
+                    .putInt(game.getBoard().getSize()).putInt(game.getInitialSnakeSize()).putLong(game.getSeed());
+            game.writeTo(out);
+            buffer.position(buffer.position() + out.position());
+        }
+
+        // Decodes a snapshot into a new game on a fresh board
+        public static Game read(ByteBuffer buffer) {
+            return read(buffer, BoardFactory.createBoard(boardSizeOf(buffer)));
+        }
+
+        // Decodes a snapshot into a new game on the given board, which must have the recorded size
+        public static Game read(ByteBuffer buffer, Board board) {
+            ByteBuffer in = header(buffer);
+            if (in.getInt(8) != board.getSize()) {
+                throw new IllegalArgumentException("Snapshot is for a board of size " + in.getInt(8));
+            }
+            Game game = GameFactory.createGame(board, in.getInt(12), in.getLong(16));
+            return decode(game, in, buffer);
+        }
+
+        // Decodes a snapshot into an existing game that was created with the same settings
+        public static Game restore(Game game, ByteBuffer buffer) {
+            ByteBuffer in = header(buffer);
+            if (in.getInt(8) != game.getBoard().getSize() || in.getInt(12) != game.getInitialSnakeSize()
+                    || in.getLong(16) != game.getSeed()) {
+                throw new IllegalArgumentException("Snapshot belongs to a different game.");
+            }
+            return decode(game, in, buffer);
+        }
+
+        // Board size recorded in a snapshot, checked against the header and the buffer's length before any board is built
+        public static int boardSizeOf(ByteBuffer buffer) {
+            ByteBuffer in = header(buffer);
+            int size = in.getInt(8);
+            if (size <= 0 || size > Board.MAX_SIZE) {
+                throw new IllegalArgumentException("Board size out of range: " + size);
+            }
+            long smallest = HEADER_BYTES + Long.BYTES + 1 + Integer.BYTES + Long.BYTES + Integer.BYTES * 2; // One segment
+            if (in.limit() < smallest) {
+                throw new IllegalArgumentException("Snapshot is truncated.");
+            }
+            return size;
+        }
+
+        // Validates the header and returns a little-endian view positioned after it
+        private static ByteBuffer header(ByteBuffer buffer) {
+            ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            if (in.remaining() < HEADER_BYTES || in.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a game snapshot.");
+            }
+            if (in.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version: " + in.getInt(4));
+            }
+            return in.position(HEADER_BYTES);
+        }
+
+        // Reads the state straight from the view into the game's arrays and advances the source buffer
+        private static Game decode(Game game, ByteBuffer in, ByteBuffer buffer) {
+            game.readFrom(in);
+            buffer.position(buffer.position() + in.position());
+            return game;
+        }
+    }
+
+    // Package Replay -> ReplayJournal, Replay
+    public static class ReplayJournal implements Closeable {
+        static final int MAGIC = 0x534E4B52; // "SNKR"
+        static final int VERSION = 4; // Bumped whenever the layout or the food draw changes
+        static final int HEADER_BYTES = 40; // magic, version, board size, initial length, seed, tick count, keyframe interval
+        static final int TICKS_OFFSET = 24; // Position of the tick count inside the header
+        static final int MIN_KEYFRAME_INTERVAL = 1 << 16; // Fewest ticks between keyframes unless told otherwise
+        private static final int WINDOW_BYTES = 1 << 20; // Size of each mapped region of the file
+
+        private final FileChannel channel; // The journal file
+        private final Game game; // The game being recorded, read for keyframes
+        private final int keyframeInterval; // Ticks between keyframes, a multiple of four
+        private ByteBuffer keyframe = ByteBuffer.allocate(0); // Staging buffer reused for every keyframe
+        private MappedByteBuffer window; // Mapped region currently being filled
+        private long windowStart; // File offset of the mapped region
+        private long ticks; // Number of directions recorded
+        private int pending; // Directions not yet written, two bits each
+        private boolean closed; // Set once the journal has been finalized
+
+        // Opens a new journal for a game that has not taken any step yet, keyframes cost at most about as much as the directions
+        public static ReplayJournal create(Path path, Game game) throws IOException {
+            int cells = game.getBoard().getSize() * game.getBoard().getSize();
+            long balanced = (long) cells * 16; // A keyframe holds four bytes per segment, up to about four per cell, a block four ticks per byte
+            return create(path, game, (int) Math.min(1 << 30, Math.max(MIN_KEYFRAME_INTERVAL, balanced)));
+        }
+
+        // Opens a new journal for a game that has not taken any step yet
+        public static ReplayJournal create(Path path, Game game, int keyframeInterval) throws IOException {
+            if (game.getTick() != 0) {
+                throw new IllegalStateException("A journal must start with the game.");
+            }
+            if (keyframeInterval <= 0 || keyframeInterval % 4 != 0) {
+                throw new IllegalArgumentException("Keyframe interval must be a positive multiple of four.");
+            }
+            return new ReplayJournal(path, game, keyframeInterval);
+        }
+
+        // Constructor writes the header and maps the first region of the file
+        private ReplayJournal(Path path, Game game, int keyframeInterval) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.game = game;
+            this.keyframeInterval = keyframeInterval;
+            this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_BYTES);
+            window.putInt(MAGIC).putInt(VERSION)
+                    .putInt(game.getBoard().getSize()).putInt(game.getInitialSnakeSize())
+                    .putLong(game.getSeed()).putLong(0).putInt(keyframeInterval).putInt(0);
+        }
+
+        // Getter for the number of directions recorded
+        public long getTicks() {
+            return ticks;
+        }
+
+        // Appends one direction, called before the game applies it
+        public void record(Direction direction) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed.");
+            }
+            if (ticks % keyframeInterval == 0) {
+                writeKeyframe(); // Each block opens with the state its directions start from
+            }
+            int shift = (int) (ticks & 3) << 1;
+            pending |= direction.ordinal() << shift;
+            ticks++;
+            if ((ticks & 3) == 0) {
+                put((byte) pending);
+                pending = 0;
+            }
+        }
+
+        // Writes the last partial byte and the tick count, then trims the file to its content
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if ((ticks & 3) != 0) {
+                put((byte) pending);
+            }
+            window.force();
+            long length = windowStart + window.position();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, ticks), TICKS_OFFSET);
+            channel.truncate(length);
+            channel.close();
+        }
+
+        // Writes the length-prefixed state of the game at the current tick
+        private void writeKeyframe() {
+            int size = ticks == 0 ? 0 : GameSnapshot.sizeOf(game); // The header alone rebuilds the state at tick 0
+            if (keyframe.capacity() < Integer.BYTES + size) {
+                keyframe = ByteBuffer.allocate((Integer.BYTES + size) * 2); // Leave room for the snake to grow
+            }
+            keyframe.clear();
+            keyframe.putInt(size);
+            if (size > 0) {
+                GameSnapshot.write(game, keyframe);
+            }
+            keyframe.flip();
+            while (keyframe.hasRemaining()) {
+                ensureWindow();
+                int chunk = Math.min(keyframe.remaining(), window.remaining());
+                window.put(keyframe.slice().limit(chunk));
+                keyframe.position(keyframe.position() + chunk);
+            }
+        }
+
+        // Writes a byte, mapping the next region once the current one is full
+        private void put(byte value) {
+            ensureWindow();
+            window.put(value);
+        }
+
+        // Maps the next region of the file when the current one is full
+        private void ensureWindow() {
+            if (!window.hasRemaining()) {
+                try {
+                    window.force();
+                    windowStart += window.capacity();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_BYTES);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    public static class Replay {
+        private final MappedByteBuffer data; // The whole journal, mapped read-only
+        private final int boardSize; // Board size of the recorded game
+        private final int initialSnakeSize; // Initial snake length of the recorded game
+        private final long seed; // Seed of the recorded game
+        private final long ticks; // Number of recorded directions
+        private final int keyframeInterval; // Ticks between keyframes
+        private final int[] keyframes; // File offset of every block, each one starts with a keyframe
+        private final int[] directions; // File offset of the packed directions of every block
+        private Board board; // Created on first use and shared by every game this replay builds
+
+        // Maps a finished journal and validates its header
+        public static Replay open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new Replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        // Constructor reads the header of a mapped journal and indexes its blocks
+        private Replay(MappedByteBuffer data) {
+            if (data.capacity() < ReplayJournal.HEADER_BYTES || data.getInt(0) != ReplayJournal.MAGIC) {
+                throw new IllegalArgumentException("Not a replay journal.");
+            }
+            if (data.getInt(4) != ReplayJournal.VERSION) {
+                throw new IllegalArgumentException("Unsupported journal version: " + data.getInt(4));
+            }
+            this.data = data;
+            this.boardSize = data.getInt(8);
+            this.initialSnakeSize = data.getInt(12);
+            this.seed = data.getLong(16);
+            this.ticks = data.getLong(ReplayJournal.TICKS_OFFSET);
+            this.keyframeInterval = data.getInt(32);
+
+            // Hop over the blocks once, a full block holds its keyframe and interval / 4 bytes of directions
+            int blocks = (int) ((ticks + keyframeInterval - 1) / keyframeInterval);
+            this.keyframes = new int[blocks];
+            this.directions = new int[blocks];
+            int offset = ReplayJournal.HEADER_BYTES;
+            for (int block = 0; block < blocks; block++) {
+                keyframes[block] = offset;
+                directions[block] = offset + Integer.BYTES + data.getInt(offset);
+                offset = directions[block] + keyframeInterval / 4;
+            }
+        }
+
+        // Getter for the number of recorded directions
+        public long getTicks() {
+            return ticks;
+        }
+
+        // Creates the game exactly as it was when recording started
+        public Game createGame() {
+            if (board == null) {
+                board = BoardFactory.createBoard(boardSize);
+            }
+            return GameFactory.createGame(board, initialSnakeSize, seed);
+        }
+
+        // Returns the direction recorded for the given tick
+        public Direction directionAt(long tick) {
+            if (tick < 0 || tick >= ticks) {
+                throw new IndexOutOfBoundsException("Tick " + tick + " of " + ticks);
+            }
+            int packed = data.get(directionOffset(tick));
+            return Direction.VALUES[(packed >>> ((int) (tick & 3) << 1)) & 3];
+        }
+
+        // Creates a game at the given tick by restoring the closest keyframe and replaying the rest
+        public Game seek(long tick) {
+            if (tick < 0 || tick > ticks) {
+                throw new IndexOutOfBoundsException("Tick " + tick + " of " + ticks);
+            }
+            Game game = createGame();
+            int block = (int) Math.min(tick / keyframeInterval, keyframes.length - 1);
+            if (block > 0) {
+                int offset = keyframes[block];
+                GameSnapshot.restore(game, data.duplicate().position(offset + Integer.BYTES).limit(directions[block]));
+            }
+            replay(game, tick);
+            return game;
+        }
+
+        // Re-drives the game through ticks [game.getTick(), toTick), returns false if it ended early
+        public boolean replay(Game game, long toTick) {
+            long tick = game.getTick();
+            long end = Math.min(toTick, ticks);
+            while (tick < end && !game.isOver()) {
+                int packed = data.get(directionOffset(tick));
+                for (int shift = (int) (tick & 3) << 1; shift < 8 && tick < end; shift += 2, tick++) {
+                    game.step(Direction.VALUES[(packed >>> shift) & 3]);
+                }
+            }
+            return tick == end;
+        }
+
+        // Maps a tick to the byte holding its direction
+        private int directionOffset(long tick) {
+            return directions[(int) (tick / keyframeInterval)] + (int) (tick % keyframeInterval >>> 2);
+        }
+    }
+
+    // Package Batch -> BatchGame
+    public static class BatchGame {
+        private static final byte DIED = (byte) MoveResult.DIED.ordinal(); // Result codes written by step
+        private static final byte ATE = (byte) MoveResult.ATE.ordinal();
+        private static final byte WON = (byte) MoveResult.WON.ordinal();
+        private static final byte OK = (byte) MoveResult.OK.ordinal();
+
+        private final Board board; // Board shared by every game in the batch
+        private final int games; // Number of games stepped together
+        private final int initialSnakeSize; // Length of every snake after a reset
+        private final int cells; // Cells per board
+        private final int capacity; // Ring buffer slots per game, a power of two above cells
+        private final int words; // Occupancy words per game
+        private final int[][] neighbors; // Next-cell tables indexed by direction ordinal
+
+        // Struct-of-arrays state, one entry or one contiguous slice per game
+        private final int[] bodies; // Ring buffers of packed cells, slice g starts at g * capacity
+        private final int[] heads; // Ring index of each head
+        private final int[] lengths; // Segments in each body
+        private final int[] headCells; // Packed cell of each head
+        private final int[] foodCells; // Packed cell of each food, -1 once a board is full
+        private final boolean[] alive; // Cleared when a snake dies
+        private final long[] occupancy; // Occupancy bits, slice g starts at g * words
+        private final int[] freeCounts; // Free cells per game
+        private final GameRandom[] randoms; // Food generators, only touched when food is eaten
+
+        // Constructor creates a batch of games, each reset with seed + its index
+        public BatchGame(Board board, int games, int initialSnakeSize, long seed) {
+            if (games <= 0) {
+                throw new IllegalArgumentException("Batch must hold at least one game.");
+            }
+            if (initialSnakeSize <= 0 || initialSnakeSize > board.getSize()) {
+                throw new IllegalArgumentException("Initial snake size must be between 1 and the board size.");
+            }
+            this.board = board;
+            this.games = games;
+            this.initialSnakeSize = initialSnakeSize;
+            this.cells = board.getSize() * board.getSize();
+            this.capacity = Integer.highestOneBit(cells) << 1; // The winning meal holds cells + 1 segments
+            this.words = (cells + 63) >>> 6;
+            this.neighbors = new int[Direction.VALUES.length][];
+            for (Direction direction : Direction.VALUES) {
+                neighbors[direction.ordinal()] = board.neighborTable(direction);
+            }
+            this.bodies = new int[Math.multiplyExact(games, capacity)];
+            this.heads = new int[games];
+            this.lengths = new int[games];
+            this.headCells = new int[games];
+            this.foodCells = new int[games];
+            this.alive = new boolean[games];
+            this.occupancy = new long[Math.multiplyExact(games, words)];
+            this.freeCounts = new int[games];
+            this.randoms = new GameRandom[games];
+            for (int game = 0; game < games; game++) {
+                reset(game, seed + game);
+            }
+        }
+
+        // Getter for the number of games in the batch
+        public int size() {
+            return games;
+        }
+
+        // Getter for the board shared by the batch
+        public Board getBoard() {
+            return board;
+        }
+
+        // Restarts one game, it plays exactly like a Game created with the same board, size and seed
+        public void reset(int game, long seed) {
+            freeCounts[game] = cells;
+            Arrays.fill(occupancy, game * words, (game + 1) * words, 0L);
+            heads[game] = 0;
+            lengths[game] = 0;
+            for (int i = 0; i < initialSnakeSize; i++) {
+                int cell = i * board.getSize(); // Same starting column as Snake
+                heads[game] = (heads[game] - 1) & (capacity - 1);
+                bodies[game * capacity + heads[game]] = cell;
+                lengths[game]++;
+                occupy(game, cell);
+            }
+            headCells[game] = (initialSnakeSize - 1) * board.getSize();
+            if (randoms[game] == null) {
+                randoms[game] = new GameRandom(seed);
+            } else {
+                randoms[game].setState(seed);
+            }
+            foodCells[game] = spawnFood(game);
+            alive[game] = foodCells[game] >= 0; // A snake that fills the board from the start has already won
+        }
+
+        // Steps every game once, actions and results hold one direction ordinal and one MoveResult ordinal per game
+        public void step(byte[] actions, byte[] results) {
+            if (actions.length < games || results.length < games) {
+                throw new IllegalArgumentException("Actions and results need one entry per game.");
+            }
+            int mask = capacity - 1;
+            for (int game = 0; game < games; game++) {
+                if (!alive[game]) {
+                    results[game] = foodCells[game] < 0 ? WON : DIED;
+                    continue;
+                }
+                int base = game * capacity;
+                int head = heads[game];
+                int length = lengths[game];
+                int newHead = neighbors[actions[game]][headCells[game]];
+
+                // A grown snake keeps copies of the tail cell until the last one leaves
+                int tail = bodies[base + ((head + length - 1) & mask)];
+                boolean tailLeaves = length == 1 || bodies[base + ((head + length - 2) & mask)] != tail;
+
+                // Decide death before touching the body, like Snake.tryMove
+                if ((occupancy[game * words + (newHead >>> 6)] & (1L << newHead)) != 0
+                        && !(newHead == tail && tailLeaves)) {
+                    alive[game] = false;
+                    results[game] = DIED;
+                    continue;
+                }
+
+                length--;
+                if (tailLeaves) {
+                    vacate(game, tail);
+                }
+
+                head = (head - 1) & mask;
+                bodies[base + head] = newHead;
+                length++;
+                occupy(game, newHead);
+                headCells[game] = newHead;
+
+                if (newHead == foodCells[game]) {
+                    bodies[base + ((head + length) & mask)] = bodies[base + ((head + length - 1) & mask)];
+                    length++;
+                    foodCells[game] = spawnFood(game);
+                    if (foodCells[game] < 0) {
+                        alive[game] = false; // The board is full, the game is won
+                        results[game] = WON;
+                    } else {
+                        results[game] = ATE;
+                    }
+                } else {
+                    results[game] = OK;
+                }
+                heads[game] = head;
+                lengths[game] = length;
+            }
+        }
+
+        // Getter for a game's head cell
+        public int getHeadCell(int game) {
+            return headCells[game];
+        }
+
+        // Getter for a game's food cell, -1 once its board is full
+        public int getFoodCell(int game) {
+            return foodCells[game];
+        }
+
+        // Getter for a game's snake length
+        public int getLength(int game) {
+            return lengths[game];
+        }
+
+        // Getter for one segment of a game's body, index 0 is the head
+        public int getBodyCell(int game, int index) {
+            if (index < 0 || index >= lengths[game]) {
+                throw new IndexOutOfBoundsException("Segment " + index + " of " + lengths[game]);
+            }
+            return bodies[game * capacity + ((heads[game] + index) & (capacity - 1))];
+        }
+
+        // Checks whether a game is still running, false after a death or a win
+        public boolean isAlive(int game) {
+            return alive[game];
+        }
+
+        // Checks whether a cell of a game is covered by its snake
+        public boolean isOccupied(int game, int cell) {
+            return (occupancy[game * words + (cell >>> 6)] & (1L << cell)) != 0;
+        }
+
+        // Draws a free cell for a game's food, same draw as FreeCells.random, walking the words since meals are rare
+        private int spawnFood(int game) {
+            int count = freeCounts[game];
+            if (count == 0) {
+                return -1;
+            }
+            int rank = randoms[game].nextInt(count);
+            for (int word = 0; ; word++) {
+                long bits = ~occupancy[game * words + word];
+                if (word == words - 1 && (cells & 63) != 0) {
+                    bits &= (1L << cells) - 1; // Bits past the last cell are not cells
+                }
+                int free = Long.bitCount(bits);
+                if (rank < free) {
+                    return (word << 6) + FreeCells.selectBit(bits, rank);
+                }
+                rank -= free;
+            }
+        }
+
+        // Marks a cell of a game as covered, mirroring FreeCells.remove
+        private void occupy(int game, int cell) {
+            occupancy[game * words + (cell >>> 6)] |= 1L << cell;
+            freeCounts[game]--;
+        }
+
+        // Marks a cell of a game as free, mirroring FreeCells.add
+        private void vacate(int game, int cell) {
+            occupancy[game * words + (cell >>> 6)] &= ~(1L << cell);
+            freeCounts[game]++;
+        }
+    }
+
+    // Package OffHeap -> OffHeapLongs, OffHeapGame
+    public static class OffHeapLongs implements Closeable {
+        private static final int CHUNK_SHIFT = 27; // 2^27 longs, 1 GiB per direct buffer, below the 2 GiB buffer limit
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+        private static final MethodHandle FREE = freeHandle(); // Unsafe.invokeCleaner, null when the JDK hides it
+        private final long length; // Number of longs
+        private ByteBuffer[] buffers; // Direct buffers owning the native memory, null once closed
+        private LongBuffer[] chunks; // Long views of the buffers, null once closed
+
+        // Constructor reserves zeroed native memory for the given number of longs, bounded by -XX:MaxDirectMemorySize
+        public OffHeapLongs(long length) {
+            if (length < 0) {
+                throw new IllegalArgumentException("Length must not be negative.");
+            }
+            this.length = length;
+            int count = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+            this.buffers = new ByteBuffer[count];
+            this.chunks = new LongBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long longs = Math.min(1L << CHUNK_SHIFT, length - ((long) i << CHUNK_SHIFT));
+                buffers[i] = ByteBuffer.allocateDirect((int) longs * Long.BYTES).order(ByteOrder.nativeOrder());
+                chunks[i] = buffers[i].asLongBuffer();
+            }
+        }
+
+        // Reads the long at an index
+        public long get(long index) {
+            return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+        }
+
+        // Writes the long at an index
+        public void set(long index, long value) {
+            chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+        }
+
+        // Getter for the number of longs
+        public long length() {
+            return length;
+        }
+
+        // Copies a range of longs from another array
+        public void copyFrom(OffHeapLongs source, long from, long to, long count) {
+            for (long i = 0; i < count; i++) {
+                set(to + i, source.get(from + i));
+            }
+        }
+
+        // Frees the native memory right away, later access fails; not safe while another thread reads or writes
+        @Override
+        public void close() {
+            ByteBuffer[] owned = buffers;
+            buffers = null;
+            chunks = null; // Dropped before freeing so no access can reach released memory
+            if (owned == null || FREE == null) {
+                return; // Already closed, or without Unsafe the memory goes back when the buffers are collected
+            }
+            for (ByteBuffer buffer : owned) {
+                try {
+                    FREE.invokeExact(buffer);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Could not free direct memory.", e);
+                }
+            }
+        }
+
+        // Looks up Unsafe.invokeCleaner, the only way to free a direct buffer before it is garbage collected
+        private static MethodHandle freeHandle() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return MethodHandles.lookup()
+                        .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(field.get(null));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    public static class OffHeapGame implements Closeable {
+        private static final int MIN_CAPACITY = 16; // Smallest ring buffer allocated for a body
+        private static final int SPAWN_ATTEMPTS = 64; // Random probes for food before counting free cells instead
+        private final int size; // Side of the board, up to 2^31 - 1
+        private final long cells; // Cells on the board, may exceed the int range
+        private final GameRandom random; // Generator for food placement
+        private OffHeapLongs occupied; // One bit per cell, set while a segment covers it
+        private OffHeapLongs body; // Ring buffer of packed cells (x + y * size), head first, power-of-two capacity
+        private long head; // Position of the head inside the ring buffer
+        private long length; // Number of segments, copies left by growth included
+        private long covered; // Number of distinct cells under the snake
+        private long food = -1; // Packed cell of the food, -1 once the board is full
+        private boolean over; // Set once the game has ended
+        private boolean won; // Set when the game ended with the board full
+        private long tick; // Number of steps taken while the game was running
+
+        // Constructor lays the snake down column 0 like Snake does and places the first food
+        public OffHeapGame(int size, int initialSnakeSize, long seed) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Board size must be positive.");
+            }
+            if (initialSnakeSize <= 0) {
+                throw new IllegalArgumentException("Snake size must be positive.");
+            }
+            if (initialSnakeSize > size) {
+                throw new IllegalArgumentException("Initial snake size cannot exceed board size.");
+            }
+            this.size = size;
+            this.cells = (long) size * size;
+            this.random = new GameRandom(seed);
+            this.occupied = new OffHeapLongs((cells + 63) >>> 6);
+            this.body = new OffHeapLongs(capacityFor(initialSnakeSize));
+            for (int i = 0; i < initialSnakeSize; i++) {
+                long cell = (long) i * size;
+                addFirst(cell);
+                occupy(cell);
+            }
+            if (!spawnFood()) {
+                over = true; // A snake covering the whole board has already won
+                won = true;
+            }
+        }
+
+        // Advances the game by one tick with the same rules as Game.step, food placement differs
+        public MoveResult step(Direction direction) {
+            if (over) {
+                return won ? MoveResult.WON : MoveResult.DIED;
+            }
+            if (occupied == null) {
+                throw new IllegalStateException("The game is closed.");
+            }
+            tick++;
+            long newHead = neighbor(direction, getHeadCell());
+            long tail = getTailCell();
+
+            // Copies left by grow() keep the tail cell covered, and a dead snake stays as it was like in Snake.tryMove
+            boolean tailLeaves = length == 1 || body.get((head + length - 2) & (body.length() - 1)) != tail;
+            if (isOccupied(newHead) && !(newHead == tail && tailLeaves)) {
+                over = true;
+                return MoveResult.DIED;
+            }
+            length--;
+            if (tailLeaves) {
+                vacate(tail);
+            }
+            addFirst(newHead);
+            occupy(newHead);
+
+            if (newHead == food) {
+                grow();
+                if (!spawnFood()) {
+                    over = true;
+                    won = true;
+                    return MoveResult.WON;
+                }
+                return MoveResult.ATE;
+            }
+            return MoveResult.OK;
+        }
+
+        // Grows the snake by one segment at the tail, as eating does
+        public void grow() {
+            addLast(getTailCell());
+        }
+
+        // Checks whether a segment covers the cell
+        public boolean isOccupied(long cell) {
+            return (occupied.get(cell >>> 6) & (1L << cell)) != 0;
+        }
+
+        // Getter for the packed cell of the head
+        public long getHeadCell() {
+            return body.get(head);
+        }
+
+        // Getter for the packed cell of the tail
+        public long getTailCell() {
+            return body.get((head + length - 1) & (body.length() - 1));
+        }
+
+        // Getter for the packed cell of the food, -1 once the board is full
+        public long getFoodCell() {
+            return food;
+        }
+
+        // Getter for the number of segments
+        public long getLength() {
+            return length;
+        }
+
+        // Getter for the side of the board
+        public int getSize() {
+            return size;
+        }
+
+        // Checks whether the game has ended, by death or by filling the board
+        public boolean isOver() {
+            return over;
+        }
+
+        // Checks whether the game ended with the snake covering the whole board
+        public boolean isWon() {
+            return won;
+        }
+
+        // Getter for the number of steps taken while the game was running
+        public long getTick() {
+            return tick;
+        }
+
+        // Releases the board and body memory, the game cannot be stepped afterwards
+        @Override
+        public void close() {
+            if (occupied != null) {
+                occupied.close();
+                body.close();
+                occupied = null;
+                body = null;
+            }
+        }
+
+        // Packed cell reached from a cell, computed since a neighbor table would be as large as the board
+        private long neighbor(Direction direction, long cell) {
+            long x = cell % size;
+            long row = cell - x;
+            return switch (direction) {
+                case UP -> row == 0 ? cell + cells - size : cell - size;
+                case DOWN -> row == cells - size ? x : cell + size;
+                case LEFT -> x == 0 ? cell + size - 1 : cell - 1;
+                case RIGHT -> x == size - 1 ? row : cell + 1;
+            };
+        }
+
+        // Places the food on a uniformly random free cell, returns false when none is left
+        private boolean spawnFood() {
+            long free = cells - covered;
+            if (free == 0) {
+                food = -1;
+                return false;
+            }
+            // Random probes almost always land on a free cell, only a nearly full board needs the counting walk
+            for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+                long cell = Long.remainderUnsigned(random.nextLong(), cells);
+                if (!isOccupied(cell)) {
+                    food = cell;
+                    return true;
+                }
+            }
+            long target = Long.remainderUnsigned(random.nextLong(), free); // Index among the free cells
+            for (long word = 0; ; word++) {
+                long bits = ~occupied.get(word);
+                if (word == occupied.length() - 1 && (cells & 63) != 0) {
+                    bits &= (1L << cells) - 1; // Bits past the last cell are not cells
+                }
+                int count = Long.bitCount(bits);
+                if (target < count) {
+                    for (long i = 0; i < target; i++) {
+                        bits &= bits - 1; // Drop the lowest free bits until the target is lowest
+                    }
+                    food = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    return true;
+                }
+                target -= count;
+            }
+        }
+
+        // Marks a cell as covered
+        private void occupy(long cell) {
+            long word = cell >>> 6;
+            occupied.set(word, occupied.get(word) | (1L << cell));
+            covered++;
+        }
+
+        // Marks a cell as free
+        private void vacate(long cell) {
+            long word = cell >>> 6;
+            occupied.set(word, occupied.get(word) & ~(1L << cell));
+            covered--;
+        }
+
+        // Pushes a cell in front of the head, doubling the ring buffer when it is full
+        private void addFirst(long cell) {
+            if (length == body.length()) {
+                resize();
+            }
+            head = (head - 1) & (body.length() - 1);
+            body.set(head, cell);
+            length++;
+        }
+
+        // Appends a cell behind the tail, doubling the ring buffer when it is full
+        private void addLast(long cell) {
+            if (length == body.length()) {
+                resize();
+            }
+            body.set((head + length) & (body.length() - 1), cell);
+            length++;
+        }
+
+        // Doubles the ring buffer into fresh native memory, unwrapping the body so the head sits at index 0
+        private void resize() {
+            OffHeapLongs larger = new OffHeapLongs(body.length() << 1);
+            long firstPart = body.length() - head; // Segments from the head up to the end of the ring
+            larger.copyFrom(body, head, 0, firstPart);
+            larger.copyFrom(body, 0, firstPart, head);
+            body.close();
+            body = larger;
+            head = 0;
+        }
+
+        // Rounds a segment count up to a power-of-two ring buffer capacity
+        private static long capacityFor(long segments) {
+            return Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(segments - 1, 1)) << 1);
+        }
+    }
+
+    // Package Environment -> SnakeEnv
+    public static class SnakeEnv {
+        public static final int BODY = 0; // Observation plane set where the snake covers a cell
+        public static final int HEAD = 1; // Observation plane set at the head
+        public static final int FOOD = 2; // Observation plane set at the food
+        public static final int PLANES = 3; // Number of observation planes
+        public static final float REWARD_FOOD = 1f; // Reward for eating
+        public static final float REWARD_DEATH = -1f; // Reward for dying
+        public static final float REWARD_STEP = 0f; // Reward for any other step
+
+        private final Board board; // Board reused by every episode
+        private final int initialSnakeSize; // Snake length at the start of every episode
+        private final int cells; // Cells per plane
+        private Game game; // The current episode
+        private float[] floats; // Observation target when the caller passed a float[]
+        private ByteBuffer bytes; // Observation target when the caller passed a ByteBuffer
+        private boolean done; // Set when the episode has ended
+
+        // Constructor creates an environment, call reset before the first step
+        public SnakeEnv(int boardSize, int initialSnakeSize) {
+            this.board = BoardFactory.createBoard(boardSize);
+            this.initialSnakeSize = initialSnakeSize;
+            this.cells = boardSize * boardSize;
+            this.done = true;
+        }
+
+        // Number of floats in an observation, planes of board cells laid out one after another
+        public int observationSize() {
+            return PLANES * cells;
+        }
+
+        // Number of discrete actions, the ordinals of Direction
+        public int actionCount() {
+            return Direction.VALUES.length;
+        }
+
+        // Starts a new episode and writes the full observation into the given array
+        public void reset(long seed, float[] observation) {
+            if (observation.length < observationSize()) {
+                throw new IllegalArgumentException("Observation needs " + observationSize() + " floats.");
+            }
+            this.floats = observation;
+            this.bytes = null;
+            start(seed);
+        }
+
+        // Starts a new episode and writes the full observation as floats from index 0 of the given buffer
+        public void reset(long seed, ByteBuffer observation) {
+            if (observation.capacity() < observationSize() * Float.BYTES) {
+                throw new IllegalArgumentException("Observation needs " + observationSize() * Float.BYTES + " bytes.");
+            }
+            this.bytes = observation;
+            this.floats = null;
+            start(seed);
+        }
+
+        // Applies an action, updates only the observation cells it changed and returns the reward
+        public float step(int action) {
+            if (done) {
+                throw new IllegalStateException("Call reset() before stepping.");
+            }
+            if (action < 0 || action >= Direction.VALUES.length) {
+                throw new IllegalArgumentException("Action out of range: " + action);
+            }
+            Snake snake = game.getSnake();
+            int oldHead = snake.getHeadCell();
+            int oldTail = snake.getTailCell();
+            int oldFood = game.getFood().getCell();
+
+            MoveResult result = game.step(Direction.VALUES[action]);
+
+            if (!snake.isOccupied(oldTail)) {
+                put(BODY, oldTail, 0f); // The tail moved on
+            }
+            if (result == MoveResult.DIED) {
+                done = true;
+                return REWARD_DEATH;
+            }
+            int newHead = snake.getHeadCell();
+            put(HEAD, oldHead, 0f);
+            put(HEAD, newHead, 1f);
+            put(BODY, newHead, 1f);
+            int newFood = game.getFood().getCell();
+            if (newFood != oldFood) {
+                put(FOOD, oldFood, 0f);
+                if (newFood >= 0) {
+                    put(FOOD, newFood, 1f);
+                }
+            }
+            if (result == MoveResult.WON) {
+                done = true;
+            }
+            return result == MoveResult.OK ? REWARD_STEP : REWARD_FOOD;
+        }
+
+        // Checks whether the episode has ended
+        public boolean isDone() {
+            return done;
+        }
+
+        // Getter for the game behind the current episode
+        public Game getGame() {
+            return game;
+        }
+
+        // Creates the episode's game and writes every plane once
+        private void start(long seed) {
+            game = GameFactory.createGame(board, initialSnakeSize, seed);
+            done = false;
+            for (int i = 0; i < observationSize(); i++) {
+                put(i, 0f);
+            }
+            PrimitiveIterator.OfInt body = game.getSnake().cells();
+            while (body.hasNext()) {
+                put(BODY, body.nextInt(), 1f);
+            }
+            put(HEAD, game.getSnake().getHeadCell(), 1f);
+            if (game.getFood().getCell() >= 0) {
+                put(FOOD, game.getFood().getCell(), 1f);
+            }
+        }
+
+        // Writes one cell of one plane
+        private void put(int plane, int cell, float value) {
+            put(plane * cells + cell, value);
+        }
+
+        // Writes one float of the observation without moving the buffer's position
+        private void put(int index, float value) {
+            if (floats != null) {
+                floats[index] = value;
+            } else {
+                bytes.putFloat(index * Float.BYTES, value);
+            }
+        }
+    }
+
+    // Package Agent -> BfsAutopilot, HamiltonianSolver, MonteCarloAgent, TranspositionTable
+    public static class BfsAutopilot {
+        static final int DEFAULT_SEARCH_LIMIT = 1 << 18; // Cells one search may visit, a whole 512x512 board
+        private final Board board; // Board the autopilot plays on
+        private final int searchLimit; // Most cells a single search visits, bounds the time of every decision
+        private final int[] queue; // Breadth-first frontier, reused across searches
+        private final int[] stamps; // Generation in which each cell was reached, stale stamps mean unvisited
+        private final byte[] arrivals; // Ordinal of the move that first reached each cell
+        private final byte[] path; // Moves of the current plan, last move first
+        private int generation; // Current search, bumping it forgets every visit at once
+        private int remaining; // Moves of the plan not played yet
+        private Game plannedGame; // Game the plan was made for
+        private long plannedTick; // Tick at which the next planned move is due
+        private int plannedFood; // Food cell the plan leads to
+        private boolean partial; // Set when the plan stops short of the food because the search hit its limit
+
+        // Constructor preallocates the search buffers for the board
+        public BfsAutopilot(Board board) {
+            this(board, DEFAULT_SEARCH_LIMIT);
+        }
+
+        // Constructor preallocates the search buffers for the board and caps the cells visited per search
+        public BfsAutopilot(Board board, int searchLimit) {
+            if (searchLimit <= 0) {
+                throw new IllegalArgumentException("Search limit must be positive.");
+            }
+            int cells = board.getSize() * board.getSize();
+            this.board = board;
+            this.searchLimit = searchLimit;
+            this.queue = new int[cells];
+            this.stamps = new int[cells];
+            this.arrivals = new byte[cells];
+            this.path = new byte[cells];
+        }
+
+        // Picks the next move of a shortest path from the head to the food around the body
+        public Direction next(Game game) {
+            // Along a planned path cells are only vacated or taken by the head, so the plan holds until the food moves
+            boolean planValid = remaining > 0 && game == plannedGame && game.getTick() == plannedTick
+                    && game.getFood().getCell() == plannedFood;
+            Snake snake = game.getSnake();
+            if (!planValid && !plan(game)) {
+                remaining = 0;
+                return survive(snake);
+            }
+            Direction move = Direction.VALUES[path[remaining - 1]];
+            if (partial) {
+                // The search never saw what lies past its frontier, so each move must keep room for the whole body
+                int enough = (int) Math.min(searchLimit, snake.getLength() + 1L);
+                nextGeneration();
+                if (room(snake, board.neighbor(move, snake.getHeadCell()), enough) < enough) {
+                    remaining = 0;
+                    return survive(snake);
+                }
+            }
+            plannedTick++;
+            remaining--;
+            return move;
+        }
+
+        // Searches breadth-first from the head to the food and records the path, returns false if none exists.
+        // A search that hits the limit settles for a path to the frontier cell nearest the food and searches again at its end,
+        // the frontier still opens onto unsearched cells where a visited cell nearer the food could be a dead end
+        private boolean plan(Game game) {
+            Snake snake = game.getSnake();
+            int start = snake.getHeadCell();
+            int target = game.getFood().getCell();
+            if (target < 0) {
+                return false; // The board is full
+            }
+            nextGeneration();
+
+            stamps[start] = generation;
+            queue[0] = start;
+            int read = 0;
+            int write = 1;
+            while (read < write) {
+                if (write >= searchLimit) {
+                    int end = nearest(read, write, target);
+                    if (end == start) {
+                        return false; // Only the head was searched, nothing to move toward
+                    }
+                    record(start, end, game);
+                    partial = true;
+                    return true;
+                }
+                int cell = queue[read++];
+                for (Direction direction : Direction.VALUES) {
+                    int next = board.neighbor(direction, cell);
+                    if (stamps[next] == generation || snake.isOccupied(next)) {
+                        continue;
+                    }
+                    stamps[next] = generation;
+                    arrivals[next] = (byte) direction.ordinal();
+                    if (next == target) {
+                        record(start, target, game);
+                        partial = false;
+                        return true;
+                    }
+                    queue[write++] = next;
+                }
+            }
+            return false;
+        }
+
+        // Frontier cell nearest the target, the frontier is the part of the queue not expanded yet
+        private int nearest(int read, int write, int target) {
+            int nearest = queue[read];
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int i = read; i < write; i++) {
+                int distance = distance(queue[i], target);
+                if (distance < nearestDistance) {
+                    nearest = queue[i];
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+
+        // Walks back from the end of the path to the head, storing the moves in reverse
+        private void record(int start, int end, Game game) {
+            remaining = 0;
+            for (int cell = end; cell != start; ) {
+                Direction arrival = Direction.VALUES[arrivals[cell]];
+                path[remaining++] = (byte) arrival.ordinal();
+                cell = board.neighbor(arrival.opposite(), cell);
+            }
+            plannedGame = game;
+            plannedTick = game.getTick();
+            plannedFood = game.getFood().getCell();
+        }
+
+        // Without a path to the food, moves toward the largest open area, rooms beyond the search limit count as equal.
+        // All four counts share one generation, a cell already reached lies in an area counted for an earlier move
+        private Direction survive(Snake snake) {
+            Direction best = Direction.VALUES[0];
+            int bestRoom = -1;
+            nextGeneration();
+            for (Direction direction : Direction.VALUES) {
+                int next = board.neighbor(direction, snake.getHeadCell());
+                int room = stamps[next] == generation ? 0 : room(snake, next, searchLimit);
+                if (room > bestRoom) {
+                    best = direction;
+                    bestRoom = room;
+                }
+            }
+            return best;
+        }
+
+        // Counts the free cells reachable from a cell up to the given cap without crossing cells of the current generation
+        private int room(Snake snake, int start, int cap) {
+            if (snake.isOccupied(start)) {
+                return 0;
+            }
+            stamps[start] = generation;
+            queue[0] = start;
+            int read = 0;
+            int write = 1;
+            while (read < write && write < cap) {
+                int cell = queue[read++];
+                for (Direction direction : Direction.VALUES) {
+                    int next = board.neighbor(direction, cell);
+                    if (stamps[next] != generation && !snake.isOccupied(next)) {
+                        stamps[next] = generation;
+                        queue[write++] = next;
+                    }
+                }
+            }
+            return Math.min(write, cap);
+        }
+
+        // Fewest moves between two cells on the wrapping board, ignoring the body
+        private int distance(int from, int to) {
+            int size = board.getSize();
+            int dx = Math.abs(from % size - to % size);
+            int dy = Math.abs(from / size - to / size);
+            return Math.min(dx, size - dx) + Math.min(dy, size - dy);
+        }
+
+        // Starts a new search, bumping the generation forgets every visit at once
+        private void nextGeneration() {
+            if (++generation == 0) { // After four billion searches the stamps wrap, start clean
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+    }
+
+    public static class HamiltonianSolver {
+        private static final long ALIGNED = Long.MAX_VALUE; // Run marker once the body is ordered along the cycle
+        private final Board board; // Board the solver plays on
+        private final int size; // Side of the board
+        private final int cells; // Cells on the board, also the length of the cycle
+        private Game trackedGame; // Game whose moves are being counted
+        private long trackedTick; // Tick at which the next move of the tracked game is due
+        private long cycleRun; // Consecutive moves that followed the cycle, or ALIGNED once the body lies along it
+
+        // Constructor fixes the cycle for the board, nothing is allocated per move
+        public HamiltonianSolver(Board board) {
+            this.board = board;
+            this.size = board.getSize();
+            this.cells = size * size;
+        }
+
+        // Picks the next move, following the cycle and cutting ahead toward the food when the cut is safe
+        public Direction next(Game game) {
+            Snake snake = game.getSnake();
+            if (game != trackedGame || game.getTick() != trackedTick) {
+                trackedGame = game; // Someone else moved the snake, the body may not lie along the cycle
+                cycleRun = 0;
+            }
+            trackedTick = game.getTick() + 1;
+            int headCell = snake.getHeadCell();
+            Direction along = cycleMove(headCell);
+
+            if (cycleRun != ALIGNED && cycleRun >= snake.getLength()) {
+                cycleRun = ALIGNED; // Every segment was laid down by a cycle move
+            }
+            if (cycleRun == ALIGNED) {
+                Direction cut = shortcut(snake, headCell, game.getFood().getCell(), along);
+                if (cut != along) {
+                    return cut;
+                }
+            }
+            if (isSafe(snake, board.neighbor(along, headCell))) { // Checked even when aligned, a win can still be lost
+                if (cycleRun != ALIGNED) {
+                    cycleRun++;
+                }
+                return along;
+            }
+            cycleRun = 0;
+            return survive(snake, headCell);
+        }
+
+        // Position of a cell along the cycle, rows are walked rightward starting on the anti-diagonal
+        public int order(int cell) {
+            int x = cell % size;
+            int y = cell / size;
+            return y * size + (x + y) % size;
+        }
+
+        // Move that follows the cycle, right along a row and down off its last cell, wrapping makes it close
+        public Direction cycleMove(int cell) {
+            int x = cell % size;
+            int y = cell / size;
+            return (x + y) % size == size - 1 ? Direction.DOWN : Direction.RIGHT;
+        }
+
+        // With the body ordered along the cycle, jumps forward as far as possible without passing the food.
+        // A cut must leave more cycle cells ahead of the head than the tail can take to catch up: the body, the holes
+        // in it including the cells the cut skips, and every tick the tail stands still while the snake grows
+        private Direction shortcut(Snake snake, int headCell, int foodCell, Direction along) {
+            if (foodCell < 0) {
+                return along;
+            }
+            int headOrder = order(headCell);
+            int foodDistance = distance(headOrder, foodCell);
+            int tailDistance = distance(headOrder, snake.getTailCell());
+            if (tailDistance == 0) {
+                tailDistance = cells; // A one-cell snake is its own tail, the whole cycle lies ahead
+            }
+            int covered = cells - snake.getFreeCells().size();
+            int holes = cells - tailDistance + 1 - covered; // Free cells between the tail and the head along the cycle
+            int pending = snake.getLength() - covered; // Copies of the tail left by grow(), one still tick each
+            Direction best = along;
+            int bestDistance = 1;
+            for (Direction direction : Direction.VALUES) {
+                int next = board.neighbor(direction, headCell);
+                int nextDistance = distance(headOrder, next);
+                int growth = pending + (next == foodCell ? 1 : 0);
+                int skipped = nextDistance - 1;
+                if (nextDistance > bestDistance && nextDistance <= foodDistance && !snake.isOccupied(next)
+                        && tailDistance - nextDistance > snake.getLength() + holes + skipped + growth) {
+                    best = direction;
+                    bestDistance = nextDistance;
+                }
+            }
+            return best;
+        }
+
+        // Cells from the head's position forward along the cycle to the given cell
+        private int distance(int headOrder, int cell) {
+            int distance = order(cell) - headOrder;
+            return distance < 0 ? distance + cells : distance;
+        }
+
+        // Checks whether the head can enter the cell without dying
+        private boolean isSafe(Snake snake, int cell) {
+            return !snake.isOccupied(cell) || (cell == snake.getTailCell() && snake.tailLeavesNext());
+        }
+
+        // While the body still crosses the cycle, steps around it toward the largest open area
+        private Direction survive(Snake snake, int headCell) {
+            Direction best = cycleMove(headCell);
+            int bestRoom = -1;
+            for (Direction direction : Direction.VALUES) {
+                int next = board.neighbor(direction, headCell);
+                if (!isSafe(snake, next)) {
+                    continue;
+                }
+                int room = snake.reachableFrom(next);
+                if (room > bestRoom) {
+                    best = direction;
+                    bestRoom = room;
+                }
+            }
+            return best;
+        }
+    }
+
+    public static class MonteCarloAgent {
+        private static final double EXPLORATION = Math.sqrt(2); // UCT exploration constant for rewards in [0, 1]
+        private final Board board; // Board the agent plays on
+        private final ForkJoinPool pool; // Runs the workers' searches side by side
+        private final Worker[] workers; // One independent tree per worker, summed at the root (root parallelism)
+        private final RecursiveAction search; // Forks every worker and joins them, reused for each decision
+        private Game root; // Position being searched, only read while the workers run
+
+        // Constructor splits the rollouts of each decision over one worker per thread of the pool
+        public MonteCarloAgent(Board board, int rollouts, ForkJoinPool pool) {
+            if (rollouts <= 0) {
+                throw new IllegalArgumentException("Rollouts must be positive.");
+            }
+            this.board = board;
+            this.pool = pool;
+            int parallelism = pool.getParallelism();
+            this.workers = new Worker[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                int share = rollouts / parallelism + (i < rollouts % parallelism ? 1 : 0);
+                workers[i] = new Worker(share, ThreadLocalRandom.current().nextLong());
+            }
+            this.search = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(workers);
+                }
+            };
+        }
+
+        // Picks the non-reversing move whose subtree the workers visited most
+        public Direction next(Game game) {
+            root = game;
+            for (Worker worker : workers) {
+                worker.reinitialize();
+            }
+            search.reinitialize();
+            try {
+                pool.invoke(search);
+            } finally {
+                root = null;
+            }
+
+            Snake snake = game.getSnake();
+            Direction best = null;
+            long bestVisits = -1;
+            for (Direction direction : Direction.VALUES) {
+                if (!isLegal(snake, direction)) {
+                    continue;
+                }
+                long visits = 0;
+                for (Worker worker : workers) {
+                    visits += worker.rootVisits(direction);
+                }
+                if (visits > bestVisits) {
+                    best = direction;
+                    bestVisits = visits;
+                }
+            }
+            return best != null ? best : Direction.VALUES[0]; // Only a one-cell board leaves no legal move
+        }
+
+        // Total game steps simulated by every worker so far
+        public long getSimulatedSteps() {
+            long steps = 0;
+            for (Worker worker : workers) {
+                steps += worker.steps;
+            }
+            return steps;
+        }
+
+        // Checks whether a move does not turn the head back into the neck
+        private boolean isLegal(Snake snake, Direction direction) {
+            return board.neighbor(direction, snake.getHeadCell()) != snake.getNeckCell();
+        }
+
+        // Searches its own tree with a scratch game refilled from the root before every rollout
+        private final class Worker extends RecursiveAction {
+            private static final long serialVersionUID = 1L; // Fork/join tasks are serializable, workers are never serialized
+            private final int rollouts; // Rollouts this worker runs per decision
+            private final int horizon; // Random moves played past the tree in one rollout
+            private final GameRandom random; // Rollout policy, owned by this worker only
+            private final int[] children; // Child node of every node per direction ordinal, 0 while unexpanded
+            private final int[] visits; // Rollouts that passed through each node
+            private final double[] totals; // Summed rewards of those rollouts
+            private final int[] path; // Nodes visited by the current rollout, root first
+            private final int[] moves; // Scratch list of candidate move ordinals
+            private Game scratch; // Simulation game, created from the first root and copied into afterwards
+            private int nodes; // Nodes allocated in the current tree
+            private long steps; // Game steps simulated so far
+
+            // Constructor preallocates a tree with one node per rollout plus the root
+            Worker(int rollouts, long seed) {
+                this.rollouts = rollouts;
+                this.horizon = 4 * board.getSize();
+                this.random = new GameRandom(seed);
+                this.children = new int[(rollouts + 1) * Direction.VALUES.length];
+                this.visits = new int[rollouts + 1];
+                this.totals = new double[rollouts + 1];
+                this.path = new int[rollouts + 1];
+                this.moves = new int[Direction.VALUES.length];
+            }
+
+            // Runs this worker's rollouts on a fresh tree
+            @Override
+            protected void compute() {
+                if (scratch == null) {
+                    scratch = root.copy();
+                }
+                nodes = 0;
+                newNode();
+                for (int i = 0; i < rollouts; i++) {
+                    rollout();
+                }
+            }
+
+            // Visits of the root's child in the given direction in the last search
+            int rootVisits(Direction direction) {
+                int child = children[direction.ordinal()];
+                return child == 0 ? 0 : visits[child];
+            }
+
+            // Selects down the tree by UCT, expands one node, plays randomly to the horizon and backs the reward up
+            private void rollout() {
+                Game game = scratch;
+                game.copyFrom(root);
+                int startLength = game.getSnake().getLength();
+                int node = 0;
+                int depth = 0;
+                path[depth++] = node;
+                while (!game.isOver()) {
+                    int move = untried(node, game.getSnake());
+                    if (move >= 0 && nodes < visits.length) {
+                        int child = newNode();
+                        children[node * Direction.VALUES.length + move] = child;
+                        step(game, move);
+                        path[depth++] = child;
+                        break;
+                    }
+                    move = select(node);
+                    if (move < 0) {
+                        break; // The tree is full and nothing below this node was expanded
+                    }
+                    node = children[node * Direction.VALUES.length + move];
+                    step(game, move);
+                    path[depth++] = node;
+                }
+                for (int i = 0; i < horizon && !game.isOver(); i++) {
+                    step(game, randomMove(game.getSnake()));
+                }
+
+                double reward = reward(game, game.getSnake().getLength() - startLength);
+                for (int i = 0; i < depth; i++) {
+                    visits[path[i]]++;
+                    totals[path[i]] += reward;
+                }
+            }
+
+            // Random legal move that avoids the body when it can
+            private int randomMove(Snake snake) {
+                int safe = 0;
+                int legal = 0;
+                for (Direction direction : Direction.VALUES) {
+                    if (!isLegal(snake, direction)) {
+                        continue;
+                    }
+                    legal++;
+                    int next = board.neighbor(direction, snake.getHeadCell());
+                    if (!snake.isOccupied(next) || (next == snake.getTailCell() && snake.tailLeavesNext())) {
+                        moves[safe++] = direction.ordinal();
+                    }
+                }
+                if (safe > 0) {
+                    return moves[random.nextInt(safe)];
+                }
+                return legal > 0 ? firstLegal(snake) : 0; // Every move dies, pick any
+            }
+
+            // First legal move, used when none is safe
+            private int firstLegal(Snake snake) {
+                for (Direction direction : Direction.VALUES) {
+                    if (isLegal(snake, direction)) {
+                        return direction.ordinal();
+                    }
+                }
+                return 0;
+            }
+
+            // Random legal move of the node that has no child yet, -1 if every legal move was expanded
+            private int untried(int node, Snake snake) {
+                int count = 0;
+                for (Direction direction : Direction.VALUES) {
+                    if (isLegal(snake, direction) && children[node * Direction.VALUES.length + direction.ordinal()] == 0) {
+                        moves[count++] = direction.ordinal();
+                    }
+                }
+                return count == 0 ? -1 : moves[random.nextInt(count)];
+            }
+
+            // Expanded child with the highest upper confidence bound, -1 if the node has none
+            private int select(int node) {
+                double logVisits = Math.log(visits[node]);
+                int best = -1;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int move = 0; move < Direction.VALUES.length; move++) {
+                    int child = children[node * Direction.VALUES.length + move];
+                    if (child == 0) {
+                        continue;
+                    }
+                    double score = totals[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                    if (score > bestScore) {
+                        best = move;
+                        bestScore = score;
+                    }
+                }
+                return best;
+            }
+
+            // Scores a finished rollout in [0, 1]: death is worst, a win is best, meals move a survivor toward 1
+            private double reward(Game game, int meals) {
+                if (game.isWon()) {
+                    return 1.0;
+                }
+                if (game.isOver()) {
+                    return 0.0;
+                }
+                return 1.0 - 0.5 / (1 + meals);
+            }
+
+            // Plays one move on the scratch game
+            private void step(Game game, int move) {
+                game.step(Direction.VALUES[move]);
+                steps++;
+            }
+
+            // Clears the next preallocated node and returns its index
+            private int newNode() {
+                int node = nodes++;
+                Arrays.fill(children, node * Direction.VALUES.length, (node + 1) * Direction.VALUES.length, 0);
+                visits[node] = 0;
+                totals[node] = 0;
+                return node;
+            }
+        }
+    }
+
+    public static class TranspositionTable {
+        private final long[] entries; // Two longs per slot: the hash XOR the data, then the data
+        private final int mask; // Slot count minus one, the count is a power of two
+
+        // Constructor allocates a fixed table, the slot count is rounded up to a power of two
+        public TranspositionTable(int slots) {
+            if (slots <= 0 || slots > 1 << 29) {
+                throw new IllegalArgumentException("Slot count must be between 1 and 2^29.");
+            }
+            int capacity = Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+            this.entries = new long[capacity * 2];
+            this.mask = capacity - 1;
+        }
+
+        // Stores data for a position, replacing whatever shared its slot
+        public void put(long hash, long data) {
+            int index = slot(hash);
+            entries[index] = key(hash) ^ data;
+            entries[index + 1] = data;
+        }
+
+        // Returns the data stored for a position, or the given value when the slot holds another position
+        public long get(long hash, long missing) {
+            int index = slot(hash);
+            long check = entries[index];
+            long data = entries[index + 1];
+            // Writers race without locks, a slot torn between two writers fails this check and reads as a miss
+            return (check ^ data) == key(hash) ? data : missing;
+        }
+
+        // Number of slots in the table
+        public int capacity() {
+            return mask + 1;
+        }
+
+        // Empties the table
+        public void clear() {
+            Arrays.fill(entries, 0);
+        }
+
+        // Hash as stored in a slot, never zero because an empty slot (zero check, zero data) would match a zero hash
+        private static long key(long hash) {
+            return hash == 0 ? 1 : hash;
+        }
+
+        // First of the two longs of the hash's slot, picked by the hash's high bits
+        private int slot(long hash) {
+            return ((int) (hash >>> 32) & mask) << 1;
+        }
+    }
+
+    // Package Session -> GameRegistry
+    public static class GameRegistry {
+        private final ConcurrentHashMap<Long, Game> sessions = new ConcurrentHashMap<>(); // Live games by session ID
+        private final ConcurrentHashMap<Integer, Board> boards = new ConcurrentHashMap<>(); // Boards are immutable, so one per size is shared
+        private final AtomicLong nextId = new AtomicLong(); // Source of unique session IDs
+
+        // Creates a new independent game with a random seed and returns its session ID
+        public long create(int boardSize, int initialSnakeSize) {
+            return create(boardSize, initialSnakeSize, ThreadLocalRandom.current().nextLong());
+        }
+
+        // Creates a new independent game with the given seed and returns its session ID
+        public long create(int boardSize, int initialSnakeSize, long seed) {
+            Board board = boards.computeIfAbsent(boardSize, BoardFactory::createBoard);
+            long id = nextId.incrementAndGet();
+            sessions.put(id, GameFactory.createGame(board, initialSnakeSize, seed));
+            return id;
+        }
+
+        // Looks up a session, returns null if it does not exist
+        public Game get(long id) {
+            return sessions.get(id);
+        }
+
+        // Advances one session by a tick, serializing callers that share the session
+        public MoveResult step(long id, Direction direction) {
+            Game game = sessions.get(id);
+            if (game == null) {
+                throw new IllegalArgumentException("Unknown session: " + id);
+            }
+            synchronized (game) { // Per-session lock, sessions never contend with each other
+                return game.step(direction);
+            }
+        }
+
+        // Captures a session as a snapshot, for checkpoints or migration to another registry
+        public ByteBuffer snapshot(long id) {
+            Game game = sessions.get(id);
+            if (game == null) {
+                throw new IllegalArgumentException("Unknown session: " + id);
+            }
+            synchronized (game) {
+                return GameSnapshot.write(game);
+            }
+        }
+
+        // Starts a new session from a snapshot and returns its session ID
+        public long restore(ByteBuffer snapshot) {
+            int boardSize = GameSnapshot.boardSizeOf(snapshot); // Rejects junk before a board is built and cached
+            Board board = boards.computeIfAbsent(boardSize, BoardFactory::createBoard);
+            long id = nextId.incrementAndGet();
+            sessions.put(id, GameSnapshot.read(snapshot, board));
+            return id;
+        }
+
+        // Removes a session, returns false if it did not exist
+        public boolean evict(long id) {
+            return sessions.remove(id) != null;
+        }
+
+        // Getter for the number of live sessions
+        public int size() {
+            return sessions.size();
+        }
+    }
+
+    // Package Console -> ConsoleGame, RealTimeGame, JitterHistogram, Renderer, FrameRenderer, AnsiDiffRenderer
+    public static class ConsoleGame {
+        private final Game game; // The engine driven by this console
+        private final Scanner scanner; // Source of the player's moves
+        private final PrintStream out; // Destination of the rendered board
+        private final Renderer renderer; // Draws the board after every move
+
+        // Constructor wires the engine to a console input and output, drawing full frames
+        public ConsoleGame(Game game, Scanner scanner, PrintStream out) {
+            this(game, scanner, out, new FrameRenderer(game.getBoard()));
+        }
+
+        // Constructor wires the engine to a console input and output with the given renderer
+        public ConsoleGame(Game game, Scanner scanner, PrintStream out, Renderer renderer) {
+            this.game = game;
+            this.scanner = scanner;
+            this.out = out;
+            this.renderer = renderer;
+        }
+
+        // Starts the game loop
+        public void start() {
+            boolean isRunning = true; // Controls the game loop
+
+            try {
+                while (isRunning) {
+                    printBoard(); // Display the board
+                    out.println("Enter direction (WASD or Q to quit): ");
+                    char directionInput = scanner.next().toUpperCase().charAt(0);
+
+                    // Quit command
+                    if (directionInput == 'Q') {
+                        out.println("Game Over: You quit the game!");
+                        isRunning = false; // Exit the game loop
+                        continue;
+                    }
+
+                    Direction direction = getDirectionFromInput(directionInput);
+
+                    if (direction != null) {
+                        MoveResult result = game.step(direction);
+                        if (result == MoveResult.DIED) {
+                            throw new HitTrailError("Snake hit its own tail!");
+                        }
+                        if (result == MoveResult.WON) {
+                            printBoard();
+                            out.println("Game Over: You filled the board!");
+                            isRunning = false;
+                        }
+                    } else {
+                        out.println("Invalid input! Use W, A, S, D, or Q to quit.");
+                    }
+                }
+            } catch (HitTrailError e) {
+                out.println("Game Over: " + e.getMessage());
+            }
+        }
+
+        // Maps user input to a Direction
+        static Direction getDirectionFromInput(char input) {
+            return switch (input) {
+                case 'W' -> Direction.UP;
+                case 'A' -> Direction.LEFT;
+                case 'S' -> Direction.DOWN;
+                case 'D' -> Direction.RIGHT;
+                default -> null; // Invalid input
+            };
+        }
+
+        // Prints the game board
+        private void printBoard() {
+            renderer.render(game, out);
+        }
+    }
+
+    public static class RealTimeGame {
+        private static final long SPIN_NANOS = 200_000; // Busy-wait the last stretch before a tick, parking is too coarse
+        private final Game game; // The engine driven by this loop
+        private final PrintStream out; // Destination of the rendered board
+        private final Renderer renderer; // Draws the board after every tick
+        private final long tickNanos; // Fixed time between ticks
+        private final AtomicReference<Direction> input = new AtomicReference<>(); // Latest turn not applied yet, one slot
+        private final JitterHistogram jitter = new JitterHistogram(); // Lateness of every tick against its schedule
+        private volatile boolean running = true; // Cleared to stop the loop from another thread
+        private Direction heading = Direction.DOWN; // The initial snake lies in column 0 with its head at the bottom
+
+        // Constructor sets up a loop that steps the game at a fixed rate
+        public RealTimeGame(Game game, PrintStream out, Renderer renderer, int ticksPerSecond) {
+            if (ticksPerSecond <= 0) {
+                throw new IllegalArgumentException("Tick rate must be positive.");
+            }
+            this.game = game;
+            this.out = out;
+            this.renderer = renderer;
+            this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        }
+
+        // Sets the turn for the next tick, replacing any turn not applied yet, safe to call from any thread
+        public void offer(Direction direction) {
+            input.set(direction);
+        }
+
+        // Asks the loop to stop after the current tick, safe to call from any thread
+        public void stop() {
+            running = false;
+        }
+
+        // Getter for the tick lateness recorded so far
+        public JitterHistogram getJitter() {
+            return jitter;
+        }
+
+        // Reads moves on a daemon thread so the tick loop never waits for the player
+        public void startInputReader(Scanner scanner) {
+            Thread reader = new Thread(() -> {
+                while (running && scanner.hasNext()) {
+                    char directionInput = scanner.next().toUpperCase().charAt(0);
+                    if (directionInput == 'Q') {
+                        stop();
+                        return;
+                    }
+                    Direction direction = ConsoleGame.getDirectionFromInput(directionInput);
+                    if (direction != null) {
+                        offer(direction);
+                    }
+                }
+            }, "snake-input");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        // Runs ticks at the fixed rate until stopped, the game ends or maxTicks have passed
+        public void run(long maxTicks) {
+            long deadline = System.nanoTime();
+            for (long tick = 0; tick < maxTicks && running && !game.isOver(); tick++) {
+                deadline += tickNanos;
+                waitUntil(deadline);
+                jitter.record(System.nanoTime() - deadline);
+
+                // Use the latest turn pressed since the last tick, otherwise keep the current heading
+                Direction queued = input.getAndSet(null);
+                if (queued != null) {
+                    heading = queued;
+                }
+                game.step(heading);
+                renderer.render(game, out);
+            }
+            running = false;
+        }
+
+        // Parks until shortly before the deadline, then spins to hit it precisely
+        private static void waitUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+            while (deadline - System.nanoTime() > 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public static class JitterHistogram {
+        private static final int MAX_MICROS = 100_000; // Samples above 100 ms share the last bucket
+        private final int[] counts = new int[MAX_MICROS + 1]; // One bucket per microsecond of lateness
+        private long samples; // Number of recorded samples
+        private long maxNanos; // Largest recorded lateness
+
+        // Records how late a tick started, in nanoseconds
+        public void record(long lateNanos) {
+            long micros = Math.max(0, lateNanos / 1_000);
+            counts[(int) Math.min(micros, MAX_MICROS)]++;
+            samples++;
+            maxNanos = Math.max(maxNanos, lateNanos);
+        }
+
+        // Returns the lateness in microseconds below which the given fraction of ticks started
+        public int percentileMicros(double fraction) {
+            long rank = (long) Math.ceil(samples * fraction);
+            long seen = 0;
+            for (int micros = 0; micros <= MAX_MICROS; micros++) {
+                seen += counts[micros];
+                if (seen >= rank && seen > 0) {
+                    return micros;
+                }
+            }
+            return MAX_MICROS;
+        }
+
+        // Formats the usual percentiles for printing
+        @Override
+        public String toString() {
+            return String.format("ticks %d, p50 %d us, p99 %d us, max %d us",
+                    samples, percentileMicros(0.50), percentileMicros(0.99), maxNanos / 1_000);
+        }
+    }
+
+    public interface Renderer {
+        // Draws the current state of the game to the given stream
+        void render(Game game, PrintStream out);
+    }
+
+    public static class FrameRenderer implements Renderer {
+        private final int size; // Size of the rendered board
+        private final int rowLength; // Bytes per row, a glyph and a space per cell plus the newline
+        private final byte[] blank; // Empty board, copied over the frame before each draw
+        private final byte[] frame; // Frame buffer reused across frames
+
+        // Constructor lays out the blank frame once for the given board
+        public FrameRenderer(Board board) {
+            this.size = board.getSize();
+            this.rowLength = size * 2 + 1;
+            this.blank = new byte[rowLength * size + 1]; // Trailing newline separates frames
+            for (int y = 0; y < size; y++) {
+                int row = y * rowLength;
+                for (int x = 0; x < size; x++) {
+                    blank[row + x * 2] = '.';
+                    blank[row + x * 2 + 1] = ' ';
+                }
+                blank[row + rowLength - 1] = '\n';
+            }
+            blank[blank.length - 1] = '\n';
+            this.frame = new byte[blank.length];
+        }
+
+        // Draws the game into the frame buffer and writes it with a single call
+        @Override
+        public void render(Game game, PrintStream out) {
+            System.arraycopy(blank, 0, frame, 0, frame.length);
+
+            // Place the snake on the board
+            PrimitiveIterator.OfInt cells = game.getSnake().cells();
+            while (cells.hasNext()) {
+                frame[offsetOf(cells.nextInt())] = 'S';
+            }
+
+            // Place the food on the board, unless the snake already fills it
+            int foodCell = game.getFood().getCell();
+            if (foodCell >= 0) {
+                frame[offsetOf(foodCell)] = 'F';
+            }
+
+            out.write(frame, 0, frame.length);
+            out.flush();
+        }
+
+        // Maps a packed cell index to the position of its glyph in the frame
+        private int offsetOf(int cell) {
+            return (cell / size) * rowLength + (cell % size) * 2;
+        }
+    }
+
+    public static class AnsiDiffRenderer implements Renderer {
+        private static final byte[] CLEAR_SCREEN = {27, '[', 'H', 27, '[', '2', 'J'}; // Home the cursor and clear
+        private static final byte[] CLEAR_BELOW = {27, '[', 'J'}; // Clear from the cursor to the end of the screen
+        private final int size; // Size of the rendered board
+        private final byte[] shown; // Glyph currently on screen for every cell
+        private byte[] buffer = new byte[256]; // Escape sequences for one frame, reused across frames
+        private int length; // Bytes written to the buffer for the current frame
+        private Game renderedGame; // Game of the frame on screen, null before the first frame
+        private long renderedGeneration; // Game generation of the frame on screen
+        private long renderedTick; // Game tick of the frame on screen
+        private int lastHead; // Head cell of the frame on screen
+        private int lastTail; // Tail cell of the frame on screen
+        private int lastFood; // Food cell of the frame on screen
+
+        // Constructor prepares the screen model for the given board
+        public AnsiDiffRenderer(Board board) {
+            this.size = board.getSize();
+            this.shown = new byte[size * size];
+        }
+
+        // Redraws only the cells that changed since the previous frame
+        @Override
+        public void render(Game game, PrintStream out) {
+            Snake snake = game.getSnake();
+            int head = snake.getHeadCell();
+            int tail = snake.getTailCell();
+            int food = game.getFood().getCell();
+            length = 0;
+
+            long tick = game.getTick();
+            long generation = game.getGeneration();
+            if (game != renderedGame || generation != renderedGeneration
+                    || (tick != renderedTick && tick != renderedTick + 1)) {
+                redrawAll(game); // Another game, a replaced state or missed ticks, the cells that changed are no longer known
+            } else {
+                // Within one tick only the head, the tail and the food can change
+                refresh(game, lastHead);
+                refresh(game, lastTail);
+                refresh(game, lastFood);
+                refresh(game, head);
+                refresh(game, tail);
+                refresh(game, food);
+            }
+            moveCursor(size, 0); // Park the cursor under the board for the prompt
+            append(CLEAR_BELOW);
+
+            renderedGame = game;
+            renderedGeneration = generation;
+            renderedTick = tick;
+            lastHead = head;
+            lastTail = tail;
+            lastFood = food;
+            out.write(buffer, 0, length);
+            out.flush();
+        }
+
+        // Clears the screen and draws every cell
+        private void redrawAll(Game game) {
+            append(CLEAR_SCREEN);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int cell = x + y * size;
+                    shown[cell] = glyphOf(game, cell);
+                    ensureCapacity(3);
+                    buffer[length++] = shown[cell];
+                    buffer[length++] = ' ';
+                }
+                buffer[length++] = '\n';
+            }
+        }
+
+        // Emits a cell if its glyph differs from what is on screen
+        private void refresh(Game game, int cell) {
+            if (cell < 0) {
+                return; // No food while the board is full
+            }
+            byte glyph = glyphOf(game, cell);
+            if (shown[cell] != glyph) {
+                shown[cell] = glyph;
+                moveCursor(cell / size, (cell % size) * 2);
+                ensureCapacity(1);
+                buffer[length++] = glyph;
+            }
+        }
+
+        // Works out which glyph belongs on a cell
+        private byte glyphOf(Game game, int cell) {
+            if (cell == game.getFood().getCell()) {
+                return 'F';
+            }
+            return game.getSnake().isOccupied(cell) ? (byte) 'S' : (byte) '.';
+        }
+
+        // Appends an ANSI cursor position sequence for a zero-based row and column
+        private void moveCursor(int row, int column) {
+            ensureCapacity(24);
+            buffer[length++] = 27;
+            buffer[length++] = '[';
+            appendNumber(row + 1);
+            buffer[length++] = ';';
+            appendNumber(column + 1);
+            buffer[length++] = 'H';
+        }
+
+        // Appends the decimal digits of a positive number without creating a String
+        private void appendNumber(int value) {
+            int start = length;
+            do {
+                buffer[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+        }
+
+        // Appends raw bytes to the frame
+        private void append(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        // Grows the buffer so that the given number of bytes fit after the current length
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
         }
     }
 
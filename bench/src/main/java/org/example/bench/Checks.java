@@ -0,0 +1,309 @@
+package org.example.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import org.example.Main.*;
+
+// Lockstep checks of the fast paths against Game, run by `mvn verify` or with
+// `java -cp target/benchmarks.jar org.example.bench.Checks [names]`, any mismatch throws
+public class Checks {
+    private static final int SNAPSHOT_HEADER_BYTES = 24; // Magic, version, board size, initial length, seed
+
+    // Private constructor prevents instantiation
+    private Checks() {
+    }
+
+    // Steps a batch and one Game per batch slot with the same random directions, then fills small boards to a win
+    static void batchLockstep() {
+        GameRandom random = new GameRandom(5);
+        for (int size : new int[] {2, 4, 7, 9, 16}) {
+            Board board = BoardFactory.createBoard(size);
+            int games = 64;
+            int initial = Math.min(3, size);
+            BatchGame batch = new BatchGame(board, games, initial, 100);
+            Game[] reference = new Game[games];
+            for (int i = 0; i < games; i++) {
+                reference[i] = GameFactory.createGame(board, initial, 100 + i);
+            }
+            byte[] actions = new byte[games];
+            byte[] results = new byte[games];
+            for (int tick = 0; tick < 3000; tick++) {
+                for (int i = 0; i < games; i++) {
+                    actions[i] = (byte) (random.nextInt(3) == 0 ? random.nextInt(4) : Direction.RIGHT.ordinal());
+                }
+                batch.step(actions, results);
+                for (int i = 0; i < games; i++) {
+                    MoveResult result = reference[i].step(Direction.values()[actions[i]]);
+                    expect(result.ordinal() == results[i], "batch result, board " + size + " tick " + tick + " game " + i);
+                    expectSame(reference[i], batch, i, "batch state, board " + size + " tick " + tick + " game " + i);
+                    if (result == MoveResult.DIED || result == MoveResult.WON) {
+                        long seed = tick * 1000L + i;
+                        batch.reset(i, seed);
+                        reference[i] = GameFactory.createGame(board, initial, seed);
+                    }
+                }
+            }
+        }
+
+        // A one-cell snake following the cycle RIGHT x (size - 1), DOWN never bites itself and eats every cell
+        for (int size : new int[] {2, 4, 8, 3}) {
+            Board board = BoardFactory.createBoard(size);
+            BatchGame batch = new BatchGame(board, 1, 1, 7);
+            Game reference = GameFactory.createGame(board, 1, 7);
+            byte[] action = new byte[1];
+            byte[] result = new byte[1];
+            for (int tick = 0; !reference.isOver(); tick++) {
+                Direction direction = tick % size == size - 1 ? Direction.DOWN : Direction.RIGHT;
+                action[0] = (byte) direction.ordinal();
+                batch.step(action, result);
+                expect(reference.step(direction).ordinal() == result[0], "cycle result, board " + size + " tick " + tick);
+                expectSame(reference, batch, 0, "cycle state, board " + size + " tick " + tick);
+            }
+            expect(reference.isWon() && !batch.isAlive(0) && batch.getLength(0) == size * size + 1,
+                    "cycle win, board " + size);
+            for (int cell = 0; cell < size * size; cell++) {
+                expect(batch.isOccupied(0, cell), "cycle coverage, board " + size + " cell " + cell);
+            }
+        }
+        System.out.println("batch: ok");
+    }
+
+    // Restores snapshots taken along a game into fresh and live games, and rejects corrupted ones without side effects
+    static void snapshotRoundTrip() {
+        GameRandom random = new GameRandom(9);
+        for (int size : new int[] {5, 20, 64, 65}) {
+            Board board = BoardFactory.createBoard(size);
+            Game game = GameFactory.createGame(board, 4, size);
+            Game live = GameFactory.createGame(board, 4, size);
+            for (int tick = 0; tick < 20_000 && !game.isOver(); tick++) {
+                if (tick % 97 == 0) {
+                    ByteBuffer snapshot = GameSnapshot.write(game);
+                    expectSame(game, GameSnapshot.read(snapshot.duplicate()), "snapshot read, board " + size);
+                    expectSame(game, GameSnapshot.restore(live, snapshot.duplicate()), "snapshot restore, board " + size);
+
+                    // Food draws depend only on the restored state, so both games keep playing the same
+                    Game original = game.copy();
+                    Game continued = GameSnapshot.read(snapshot.duplicate());
+                    for (int step = 0; step < 200 && !original.isOver(); step++) {
+                        Direction direction = step % 7 == 6 ? Direction.DOWN : Direction.RIGHT;
+                        expect(original.step(direction) == continued.step(direction), "snapshot continuation, board " + size);
+                        expectSame(original, continued, "snapshot continuation, board " + size);
+                    }
+
+                    // Any flipped byte past the header is either rejected before live changes, or restores a valid game
+                    ByteBuffer corrupted = copy(snapshot);
+                    int offset = SNAPSHOT_HEADER_BYTES + random.nextInt(corrupted.remaining() - SNAPSHOT_HEADER_BYTES);
+                    corrupted.put(offset, (byte) ~corrupted.get(offset));
+                    long hash = live.getHash();
+                    long liveTick = live.getTick();
+                    try {
+                        GameSnapshot.restore(live, corrupted);
+                    } catch (IllegalArgumentException rejected) {
+                        expect(live.getHash() == hash && live.getTick() == liveTick, "rejected snapshot changed the game");
+                    }
+                    GameSnapshot.restore(live, snapshot.duplicate());
+                }
+                game.step(tick % (size + 3) == size + 2 ? Direction.DOWN : Direction.RIGHT);
+            }
+        }
+
+        // A body that doubles back onto itself is rejected
+        Game fresh = GameFactory.createGame(BoardFactory.createBoard(5), 3, 11);
+        ByteBuffer crossing = copy(GameSnapshot.write(fresh));
+        int body = SNAPSHOT_HEADER_BYTES + Long.BYTES + 1 + Integer.BYTES + Long.BYTES + Integer.BYTES;
+        crossing.putInt(body, 5).putInt(body + 4, 0).putInt(body + 8, 5);
+        long freshHash = fresh.getHash();
+        try {
+            GameSnapshot.restore(fresh, crossing);
+            throw new AssertionError("crossing body accepted");
+        } catch (IllegalArgumentException expected) {
+            expect(fresh.getHash() == freshHash, "crossing body changed the game");
+        }
+
+        // A header claiming a huge board is rejected before any board is built
+        ByteBuffer junk = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        junk.putInt(0, 0x534E4B53).putInt(4, 1).putInt(8, 40_000);
+        GameRegistry registry = new GameRegistry();
+        try {
+            registry.restore(junk);
+            throw new AssertionError("junk snapshot accepted");
+        } catch (IllegalArgumentException expected) {
+            expect(registry.size() == 0, "junk snapshot created a session");
+        }
+        System.out.println("snapshot: ok");
+    }
+
+    // Records a journal and checks that seeking to any tick matches replaying from the start
+    static void journalRoundTrip() throws IOException {
+        Path path = Files.createTempFile("snake", ".replay");
+        try {
+            Game game = GameFactory.createGame(BoardFactory.createBoard(16), 3, 5);
+            Game recorded = game.copy();
+            try (ReplayJournal journal = ReplayJournal.create(path, game, 64)) {
+                game.setJournal(journal);
+                for (long tick = 0; tick < 200_000 && !game.isOver(); tick++) {
+                    game.step(tick % 17 == 16 ? Direction.DOWN : Direction.RIGHT);
+                }
+            }
+            Replay replay = Replay.open(path);
+            expect(replay.getTicks() == game.getTick(), "journal tick count");
+            expectSame(game, replay.seek(replay.getTicks()), "journal end");
+
+            GameRandom random = new GameRandom(3);
+            for (int i = 0; i < 200; i++) {
+                long tick = random.nextLong() >>> 1;
+                tick %= replay.getTicks() + 1;
+                Game expected = recorded.copy();
+                replay.replay(expected, tick);
+                expectSame(expected, replay.seek(tick), "journal seek to " + tick);
+            }
+        } finally {
+            Files.delete(path);
+        }
+        System.out.println("journal: ok");
+    }
+
+    // Feeds every diff frame through a minimal terminal and compares the screen with the game, across steps,
+    // copyFrom to a different state at the same tick, snapshot restores and new games
+    static void renderDiff() {
+        GameRandom random = new GameRandom(13);
+        for (int size : new int[] {2, 3, 8}) {
+            Board board = BoardFactory.createBoard(size);
+            Game game = GameFactory.createGame(board, 2, size);
+            AnsiDiffRenderer renderer = new AnsiDiffRenderer(board);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(bytes);
+            byte[][] screen = new byte[size + 1][2 * size + 1];
+            int[] cursor = new int[2];
+            ByteBuffer saved = GameSnapshot.write(game);
+            for (int frame = 0; frame < 5000; frame++) {
+                Direction direction = Direction.values()[random.nextInt(4)];
+                int choice = random.nextInt(8);
+                if (game.isOver()) {
+                    game = GameFactory.createGame(board, 2, frame);
+                    saved = GameSnapshot.write(game);
+                } else if (choice == 0) {
+                    // Render one branch, then load another branch of the same tick into the same game
+                    Game branch = game.copy();
+                    for (int step = 0; step < 3; step++) {
+                        branch.step(Direction.values()[random.nextInt(4)]);
+                        game.step(Direction.values()[random.nextInt(4)]);
+                    }
+                    render(renderer, game, bytes, out, screen, cursor, "before copyFrom, board " + size);
+                    game.copyFrom(branch);
+                } else if (choice == 1) {
+                    GameSnapshot.restore(game, saved.duplicate());
+                } else if (choice == 2) {
+                    saved = GameSnapshot.write(game);
+                    game.step(direction);
+                } else {
+                    game.step(direction);
+                }
+                render(renderer, game, bytes, out, screen, cursor, "frame " + frame + ", board " + size);
+            }
+        }
+        System.out.println("render: ok");
+    }
+
+    // Renders a frame into the terminal model and fails unless every cell shows the game's glyph
+    private static void render(AnsiDiffRenderer renderer, Game game, ByteArrayOutputStream bytes, PrintStream out,
+                               byte[][] screen, int[] cursor, String what) {
+        bytes.reset();
+        renderer.render(game, out);
+        feed(bytes.toByteArray(), screen, cursor);
+        int size = game.getBoard().getSize();
+        for (int cell = 0; cell < size * size; cell++) {
+            byte expected = cell == game.getFood().getCell() ? (byte) 'F' : game.getSnake().isOccupied(cell) ? (byte) 'S' : (byte) '.';
+            expect(screen[cell / size][(cell % size) * 2] == expected, "render " + what + ", cell " + cell);
+        }
+    }
+
+    // Applies printable bytes, newlines and the cursor position and erase sequences the renderers emit
+    private static void feed(byte[] output, byte[][] screen, int[] cursor) {
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] == '\n') {
+                cursor[0]++;
+                cursor[1] = 0;
+            } else if (output[i] != 27) {
+                screen[cursor[0]][cursor[1]++] = output[i];
+            } else {
+                int[] params = new int[2];
+                int count = 0;
+                int j = i + 2; // Skip ESC [
+                for (; output[j] == ';' || Character.isDigit(output[j]); j++) {
+                    if (output[j] == ';') {
+                        count++;
+                    } else {
+                        params[count] = params[count] * 10 + output[j] - '0';
+                    }
+                }
+                if (output[j] == 'H') {
+                    cursor[0] = Math.max(params[0], 1) - 1;
+                    cursor[1] = Math.max(params[1], 1) - 1;
+                } else if (output[j] == 'J') {
+                    for (int row = params[0] == 2 ? 0 : cursor[0]; row < screen.length; row++) {
+                        Arrays.fill(screen[row], row == cursor[0] && params[0] != 2 ? cursor[1] : 0, screen[row].length, (byte) ' ');
+                    }
+                }
+                i = j;
+            }
+        }
+    }
+
+    // Fails unless two games are in the same state
+    private static void expectSame(Game expected, Game actual, String what) {
+        expect(expected.getTick() == actual.getTick() && expected.getHash() == actual.getHash()
+                && expected.getSnake().getLength() == actual.getSnake().getLength()
+                && expected.isOver() == actual.isOver() && expected.isWon() == actual.isWon(), what);
+    }
+
+    // Fails unless a batch slot is in the same state as a game, body included, both leave the snake alone when it dies
+    private static void expectSame(Game expected, BatchGame batch, int game, String what) {
+        expect(expected.isOver() != batch.isAlive(game)
+                && expected.getSnake().getHeadCell() == batch.getHeadCell(game)
+                && expected.getFood().getCell() == batch.getFoodCell(game)
+                && expected.getSnake().getLength() == batch.getLength(game), what);
+        PrimitiveIterator.OfInt cells = expected.getSnake().cells();
+        for (int index = 0; cells.hasNext(); index++) {
+            expect(cells.nextInt() == batch.getBodyCell(game, index), what + ", segment " + index);
+        }
+    }
+
+    // Throws when a check does not hold
+    private static void expect(boolean holds, String what) {
+        if (!holds) {
+            throw new AssertionError(what);
+        }
+    }
+
+    // Independent little-endian copy of a buffer's remaining bytes
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> selected = Arrays.asList(args);
+        if (selected.isEmpty() || selected.contains("batch")) {
+            batchLockstep();
+        }
+        if (selected.isEmpty() || selected.contains("snapshot")) {
+            snapshotRoundTrip();
+        }
+        if (selected.isEmpty() || selected.contains("journal")) {
+            journalRoundTrip();
+        }
+        if (selected.isEmpty() || selected.contains("render")) {
+            renderDiff();
+        }
+    }
+}
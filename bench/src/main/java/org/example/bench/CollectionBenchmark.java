@@ -0,0 +1,92 @@
+package org.example.bench;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Coordinate;
+import org.example.Main.CoordinateSet;
+import org.example.Main.GameRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A window of size cells sliding along the board, the access pattern of a snake's body
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionBenchmark {
+    private static final int MAX_STORED = 1 << 20; // Cap on the coordinates the lookup set holds on big boards
+    private static final int PROBES = 1 << 12; // Coordinates the lookup benchmark cycles through
+
+    @Param({"10", "64", "512", "4096"})
+    public int boardSize;
+
+    private int cells; // Cells on the board
+    private HashSet<Coordinate> boxed; // Window held as coordinate objects
+    private CoordinateSet packed; // Window held as packed cells
+    private int head; // Next cell to enter the window
+    private HashSet<Coordinate> stored; // A random third of the board, spread over the whole table
+    private Coordinate[] probes; // Prebuilt lookups, half of them stored
+    private int probe; // Next probe to look up
+
+    // Starts with an empty window at the top-left corner
+    @Setup(Level.Trial)
+    public void setUp() {
+        Board board = BoardFactory.createBoard(boardSize);
+        cells = boardSize * boardSize;
+        boxed = new HashSet<>();
+        packed = new CoordinateSet(board, boardSize);
+        head = 0;
+
+        GameRandom random = new GameRandom(42);
+        stored = new HashSet<>();
+        probes = new Coordinate[PROBES];
+        int count = (int) Math.min(cells / 3, MAX_STORED);
+        int[] kept = new int[count];
+        for (int i = 0; i < count; i++) {
+            kept[i] = random.nextInt(cells);
+            stored.add(new Coordinate(kept[i] % boardSize, kept[i] / boardSize));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            int cell = i % 2 == 0 ? kept[random.nextInt(count)] : random.nextInt(cells);
+            probes[i] = new Coordinate(cell % boardSize, cell / boardSize);
+        }
+    }
+
+    @Benchmark
+    public boolean hashSet() {
+        int tail = (head - boardSize + cells) % cells;
+        boxed.add(new Coordinate(head % boardSize, head / boardSize));
+        boolean removed = boxed.remove(new Coordinate(tail % boardSize, tail / boardSize));
+        head = (head + 1) % cells;
+        return removed;
+    }
+
+    // Lookups in a set spread over the whole board, where the spread of Coordinate.hashCode decides the chain lengths
+    @Benchmark
+    public boolean hashSetLookup() {
+        probe = (probe + 1) & (PROBES - 1);
+        return stored.contains(probes[probe]);
+    }
+
+    @Benchmark
+    public boolean coordinateSet() {
+        packed.add(head);
+        boolean removed = packed.remove((head - boardSize + cells) % cells);
+        head = (head + 1) % cells;
+        return removed;
+    }
+}
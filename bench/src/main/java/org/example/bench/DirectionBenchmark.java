@@ -0,0 +1,59 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Coordinate;
+import org.example.Main.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectionBenchmark {
+    @Param({"10", "64", "512", "4096"})
+    public int boardSize;
+
+    private Board board; // Supplies the neighbor tables and the coordinate cache
+    private Coordinate position; // Walked by the object-based moves
+    private int cell; // Walked by the packed move
+
+    // Starts every walk in the top-left corner
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = BoardFactory.createBoard(boardSize);
+        position = board.at(0, 0);
+        cell = 0;
+    }
+
+    // Allocates a fresh coordinate per move
+    @Benchmark
+    public Coordinate move() {
+        return position = Direction.RIGHT.move(position, boardSize);
+    }
+
+    // Returns the board's cached coordinate
+    @Benchmark
+    public Coordinate moveOnBoard() {
+        return position = Direction.RIGHT.move(board, position);
+    }
+
+    @Benchmark
+    public int step() {
+        return cell = Direction.RIGHT.step(board, cell);
+    }
+}
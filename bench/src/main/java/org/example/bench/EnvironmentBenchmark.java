@@ -0,0 +1,46 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Direction;
+import org.example.Main.SnakeEnv;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SnakeEnv steps with incremental observations on a 32x32 board
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+    private SnakeEnv env; // Environment under test
+    private float[] observation; // Observation written in place
+    private long episodes; // Seed of the current episode
+    private int steps; // Steps taken, picks the action
+
+    // Starts the first episode
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = new SnakeEnv(32, 3);
+        observation = new float[env.observationSize()];
+        env.reset(episodes, observation);
+    }
+
+    @Benchmark
+    public float step() {
+        if (env.isDone()) {
+            env.reset(++episodes, observation);
+        }
+        return env.step(++steps % 29 == 28 ? Direction.DOWN.ordinal() : Direction.RIGHT.ordinal());
+    }
+}
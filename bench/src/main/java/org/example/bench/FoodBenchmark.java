@@ -0,0 +1,64 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Food;
+import org.example.Main.FreeCells;
+import org.example.Main.GameRandom;
+import org.example.Main.Snake;
+import org.example.Main.SnakeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoodBenchmark {
+    @Param({"10", "64", "512", "4096"})
+    public int boardSize;
+
+    private Snake snake; // A short snake, nearly every cell is free
+    private Food food; // Spawns among the snake's free cells
+    private FreeCells nearlyFull; // Only 1% of the cells left free
+    private Food lastFood; // Spawns among the last free cells
+
+    // Builds both boards once per size
+    @Setup(Level.Trial)
+    public void setUp() {
+        Board board = BoardFactory.createBoard(boardSize);
+        snake = SnakeFactory.createSnake(3, board);
+        food = new Food(board, snake.getFreeCells(), new GameRandom(boardSize));
+
+        int cells = boardSize * boardSize;
+        GameRandom random = new GameRandom(42);
+        nearlyFull = new FreeCells(cells);
+        while (nearlyFull.size() > Math.max(1, cells / 100)) {
+            nearlyFull.remove(nearlyFull.random(random)); // Cover random cells until 1% stay free
+        }
+        lastFood = new Food(board, nearlyFull, random);
+    }
+
+    @Benchmark
+    public boolean generateNewPosition() {
+        return food.generateNewPosition(snake.getFreeCells());
+    }
+
+    @Benchmark
+    public boolean generateNewPositionNearlyFull() {
+        return lastFood.generateNewPosition(nearlyFull);
+    }
+}
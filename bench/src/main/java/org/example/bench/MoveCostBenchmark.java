@@ -0,0 +1,54 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Direction;
+import org.example.Main.Snake;
+import org.example.Main.SnakeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Snake.move cost from 10 to a million segments on one 1024x1024 board, flat when a tick does not depend on length
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveCostBenchmark {
+    private static final int BOARD_SIZE = 1024; // 1M cells, enough room for the longest snake
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int length;
+
+    private Snake snake; // Follows a cycle through every cell, so it never reaches its own tail
+    private int tick; // Moves made so far, picks the next direction of the cycle
+
+    // Grows the snake once per length, the extra segments stack on the tail and leave one per move
+    @Setup(Level.Trial)
+    public void setUp() {
+        Board board = BoardFactory.createBoard(BOARD_SIZE);
+        snake = SnakeFactory.createSnake(10, board);
+        for (int i = 10; i < length; i++) {
+            snake.grow();
+        }
+        tick = 0;
+    }
+
+    // RIGHT across each row and DOWN at its end visits all cells before repeating, longer than any body here
+    @Benchmark
+    public void move() {
+        snake.move(tick++ % BOARD_SIZE == BOARD_SIZE - 1 ? Direction.DOWN : Direction.RIGHT);
+    }
+}
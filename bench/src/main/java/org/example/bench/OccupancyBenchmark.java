@@ -0,0 +1,75 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.BitSetOccupancy;
+import org.example.Main.Bitboard;
+import org.example.Main.BoardFactory;
+import org.example.Main.GameRandom;
+import org.example.Main.Occupancy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Bitboard against BitSet occupancy on boards up to 64x64, a third covered
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccupancyBenchmark {
+    @Param({"Bitboard", "BitSetOccupancy"})
+    public String kind;
+
+    @Param({"10", "63", "64"}) // Rows of odd widths straddle words, 64 lines them up
+    public int boardSize;
+
+    private Occupancy set; // Set under test
+    private int start; // First free cell, where flood fills begin
+    private int cell; // Cell toggled by the access benchmark
+
+    // Covers the same random third of the board in either kind of set
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = kind.equals("Bitboard") ? new Bitboard(boardSize) : new BitSetOccupancy(BoardFactory.createBoard(boardSize));
+        GameRandom random = new GameRandom(42);
+        for (int i = 0; i < boardSize * boardSize / 3; i++) {
+            set.set(random.nextInt(boardSize * boardSize));
+        }
+        start = 0;
+        while (set.get(start)) {
+            start++;
+        }
+    }
+
+    @Benchmark
+    public int floodCount() {
+        return set.floodCount(start);
+    }
+
+    @Benchmark
+    public int count() {
+        return set.count();
+    }
+
+    // A set, a read and a clear, the accesses of one move
+    @Benchmark
+    public boolean access() {
+        cell = (cell + 67) % (boardSize * boardSize); // Hop across rows
+        boolean covered = set.get(cell);
+        set.set(cell);
+        if (!covered) {
+            set.clear(cell);
+        }
+        return covered;
+    }
+}
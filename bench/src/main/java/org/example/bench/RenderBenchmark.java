@@ -0,0 +1,96 @@
+package org.example.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+import org.example.Main.AnsiDiffRenderer;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Coordinate;
+import org.example.Main.Direction;
+import org.example.Main.FrameRenderer;
+import org.example.Main.Game;
+import org.example.Main.GameFactory;
+import org.example.Main.MoveResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"10", "64", "512", "4096"})
+    public int boardSize;
+
+    private final PrintStream sink = new PrintStream(OutputStream.nullOutputStream()); // Discards every frame
+    private Board board; // Board of every rendered game
+    private Game game; // Game being drawn
+    private FrameRenderer frames; // Whole frame from one reused buffer
+    private AnsiDiffRenderer diffs; // Only the cells that changed
+
+    // Starts a game and draws its first diff frame, a full redraw, outside the timed region
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = BoardFactory.createBoard(boardSize);
+        game = GameFactory.createGame(board, 3);
+        frames = new FrameRenderer(board);
+        diffs = new AnsiDiffRenderer(board);
+        diffs.render(game, sink);
+    }
+
+    // The original Game.printBoard, a fresh char grid per frame and one print per cell
+    @Benchmark
+    public void printBoard() {
+        int size = board.getSize();
+        char[][] boardArray = new char[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                boardArray[i][j] = '.';
+            }
+        }
+        PrimitiveIterator.OfInt cells = game.getSnake().cells();
+        while (cells.hasNext()) {
+            int cell = cells.nextInt();
+            boardArray[cell / size][cell % size] = 'S';
+        }
+        Coordinate foodPosition = game.getFood().getPosition();
+        if (foodPosition != null) {
+            boardArray[foodPosition.getY()][foodPosition.getX()] = 'F';
+        }
+        for (char[] row : boardArray) {
+            for (char cell : row) {
+                sink.print(cell + " ");
+            }
+            sink.println();
+        }
+        sink.println();
+    }
+
+    @Benchmark
+    public void frameRenderer() {
+        frames.render(game, sink);
+    }
+
+    // One tick and its diff frame, a new game forces one full redraw
+    @Benchmark
+    public void ansiDiffRenderer() {
+        if (game.step(Direction.RIGHT) == MoveResult.DIED) {
+            game = GameFactory.createGame(board, 3);
+        }
+        diffs.render(game, sink);
+    }
+}
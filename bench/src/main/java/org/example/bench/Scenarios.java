@@ -0,0 +1,377 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import org.example.Main.*;
+
+// Whole-game scenarios whose numbers are not per operation (throughput under threads, latency percentiles, sizes),
+// run with `java -cp target/benchmarks.jar org.example.bench.Scenarios [names]`
+public class Scenarios {
+    private static final int ROUNDS = 5; // Samples taken per configuration
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean(); // Per-thread allocation counter
+
+    // Private constructor prevents instantiation
+    private Scenarios() {
+    }
+
+    // Measures registry step throughput with 10k sessions spread over a growing number of threads
+    static void registryThroughput() throws InterruptedException {
+        int sessions = 10_000;
+        int ticks = 200; // Steps applied to every session per thread count
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("GameRegistry throughput (" + sessions + " sessions, board 32x32)");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            GameRegistry registry = new GameRegistry();
+            long[] ids = new long[sessions];
+            for (int i = 0; i < sessions; i++) {
+                ids[i] = registry.create(32, 3);
+            }
+
+            // Every thread owns a contiguous slice of the sessions
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int from = sessions * t / threads;
+                int to = sessions * (t + 1) / threads;
+                tasks.add(() -> {
+                    for (int tick = 0; tick < ticks; tick++) {
+                        Direction direction = tick % 8 == 7 ? Direction.DOWN : Direction.RIGHT;
+                        for (int i = from; i < to; i++) {
+                            if (registry.step(ids[i], direction) == MoveResult.DIED) {
+                                registry.evict(ids[i]); // Replace finished games to keep the load constant
+                                ids[i] = registry.create(32, 3);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            pool.invokeAll(tasks);
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.printf("  %2d threads: %,14.0f steps/s%n", threads, (double) sessions * ticks * 1e9 / elapsed);
+        }
+    }
+
+    // Measures how late ticks start in the real-time loop at 60 Hz
+    static void realTimeJitter() {
+        Game game = GameFactory.createGame(64, 3);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        RealTimeGame realTime = new RealTimeGame(game, sink, new AnsiDiffRenderer(game.getBoard()), 60);
+        realTime.run(300); // Five seconds of ticks
+        System.out.println("Real-time loop at 60 Hz: " + realTime.getJitter());
+    }
+
+    // Measures journal size and replay speed for a ten million tick game
+    static void replayThroughput() throws IOException {
+        Path path = Files.createTempFile("snake", ".replay");
+        try {
+            long ticks = 10_000_000;
+            Game recorded = GameFactory.createGame(BoardFactory.createBoard(1024), 3, 42);
+            try (ReplayJournal journal = ReplayJournal.create(path, recorded)) {
+                recorded.setJournal(journal);
+                for (long tick = 0; tick < ticks; tick++) {
+                    recorded.step(tick % 1000 == 999 ? Direction.DOWN : Direction.RIGHT); // A slow spiral over the board
+                }
+            }
+
+            Replay replay = Replay.open(path);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                Game game = replay.createGame();
+                long start = System.nanoTime();
+                replay.replay(game, replay.getTicks());
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("Replay of %,d ticks: %,d bytes, %,.0f ticks/s%n",
+                    replay.getTicks(), Files.size(path), replay.getTicks() * 1e9 / best);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Measures random seek latency on a hundred million tick replay
+    static void replaySeekLatency() throws IOException {
+        Path path = Files.createTempFile("snake", ".replay");
+        try {
+            long ticks = 100_000_000;
+            Game recorded = GameFactory.createGame(BoardFactory.createBoard(64), 3, 42);
+            try (ReplayJournal journal = ReplayJournal.create(path, recorded)) {
+                recorded.setJournal(journal);
+                for (long tick = 0; tick < ticks && !recorded.isOver(); tick++) {
+                    recorded.step(tick % 61 == 60 ? Direction.DOWN : Direction.RIGHT);
+                }
+            }
+
+            Replay replay = Replay.open(path);
+            GameRandom random = new GameRandom(7);
+            int seeks = 1_000;
+            long[] latencies = new long[seeks];
+            for (int i = 0; i < seeks; i++) {
+                long target = (random.nextLong() >>> 1) % (replay.getTicks() + 1);
+                long start = System.nanoTime();
+                replay.seek(target);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("Seek in %,d ticks (%,d bytes): p50 %,d us, p99 %,d us, max %,d us%n",
+                    replay.getTicks(), Files.size(path), latencies[seeks / 2] / 1_000,
+                    latencies[seeks * 99 / 100] / 1_000, latencies[seeks - 1] / 1_000);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Measures snapshot and restore time for a mid-game state
+    static void snapshotRoundTrip() {
+        Game game = GameFactory.createGame(BoardFactory.createBoard(64), 3, 42);
+        for (int tick = 0; tick < 1_000_000 && !game.isOver(); tick++) {
+            game.step(tick % 61 == 60 ? Direction.DOWN : Direction.RIGHT);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(GameSnapshot.sizeOf(game) * 2);
+        Game target = GameFactory.createGame(game.getBoard(), game.getInitialSnakeSize(), game.getSeed());
+        int rounds = 10_000;
+        long writes = 0;
+        long reads = 0;
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            long start = System.nanoTime();
+            GameSnapshot.write(game, buffer);
+            writes += System.nanoTime() - start;
+            buffer.flip();
+            start = System.nanoTime();
+            GameSnapshot.restore(target, buffer);
+            reads += System.nanoTime() - start;
+        }
+        System.out.printf("Snapshot of a 64x64 game (%,d bytes): write %.2f us, restore %.2f us%n",
+                GameSnapshot.sizeOf(game), writes / 1e3 / rounds, reads / 1e3 / rounds);
+    }
+
+    // Measures environment steps per second for a batch of 4096 games on 16x16 boards
+    static void batchThroughput() {
+        int games = 4096;
+        BatchGame batch = new BatchGame(BoardFactory.createBoard(16), games, 3, 42);
+        byte[][] actions = new byte[64][games]; // Pre-drawn actions, right or down so a snake never reverses
+        GameRandom random = new GameRandom(7);
+        for (byte[] tick : actions) {
+            for (int game = 0; game < games; game++) {
+                tick[game] = (byte) (random.nextInt(4) == 0 ? Direction.DOWN : Direction.RIGHT).ordinal();
+            }
+        }
+        byte[] results = new byte[games];
+        long resets = 0;
+        int ticks = 20_000;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++) {
+                batch.step(actions[tick & 63], results);
+                for (int game = 0; game < games; game++) {
+                    if (results[game] == MoveResult.DIED.ordinal()) {
+                        batch.reset(game, ++resets); // Keep every lane busy
+                    }
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("BatchGame, %d games on 16x16: %,.0f env-steps/s (%,d resets)%n",
+                games, (double) games * ticks * 1e9 / best, resets);
+    }
+
+    // Measures autopilot decision latency while it plays on a 1000x1000 board
+    static void autopilotDecisions() {
+        Game game = GameFactory.createGame(BoardFactory.createBoard(1000), 3, 42);
+        BfsAutopilot autopilot = new BfsAutopilot(game.getBoard());
+        JitterHistogram latency = new JitterHistogram(); // Reused for its microsecond percentiles
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        long thinking = 0;
+        int meals = 0;
+        for (int tick = 0; tick < 1_000_000 && !game.isOver(); tick++) {
+            long start = System.nanoTime();
+            Direction direction = autopilot.next(game);
+            long elapsed = System.nanoTime() - start;
+            latency.record(elapsed);
+            thinking += elapsed;
+            if (game.step(direction) == MoveResult.ATE) {
+                meals++;
+            }
+        }
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf("BFS autopilot on 1000x1000: %d meals, mean %.2f us, %s, %,d bytes allocated%n",
+                meals, thinking / 1e3 / game.getTick(), latency, allocated);
+    }
+
+    // Plays the Hamiltonian solver to a full board, measuring the snake's cost all the way up to size squared segments
+    static void solverToFullBoard() {
+        for (int size : new int[]{32, 128}) {
+            Game game = GameFactory.createGame(BoardFactory.createBoard(size), 3, 42);
+            HamiltonianSolver solver = new HamiltonianSolver(game.getBoard());
+            JitterHistogram latency = new JitterHistogram(); // Reused for its microsecond percentiles
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            while (!game.isOver()) {
+                long moveStart = System.nanoTime();
+                game.step(solver.next(game));
+                latency.record(System.nanoTime() - moveStart);
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+            System.out.printf("Hamiltonian solver on %dx%d: %s at length %,d after %,d ticks, %.1f ns/move, %s, %,d bytes allocated%n",
+                    size, size, game.isWon() ? "won" : "died", game.getSnake().getLength(), game.getTick(),
+                    (double) elapsed / game.getTick(), latency, allocated);
+        }
+    }
+
+    // Measures simulated steps per second under MCTS rollouts, one worker against one per core
+    static void monteCarloThroughput() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : cores > 1 ? new int[]{1, cores} : new int[]{1}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            Game game = GameFactory.createGame(BoardFactory.createBoard(20), 3, 42);
+            MonteCarloAgent agent = new MonteCarloAgent(game.getBoard(), 4096, pool);
+            JitterHistogram latency = new JitterHistogram(); // Reused for its microsecond percentiles
+            long start = System.nanoTime();
+            int decisions = 0;
+            for (; decisions < 200 && !game.isOver(); decisions++) {
+                long decisionStart = System.nanoTime();
+                Direction direction = agent.next(game);
+                latency.record(System.nanoTime() - decisionStart);
+                game.step(direction);
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.printf("MCTS on 20x20 with %d worker(s): %d decisions, %,.0f simulated steps/s, length %d, %s%n",
+                    parallelism, decisions, agent.getSimulatedSteps() * 1e9 / elapsed,
+                    game.getSnake().getLength(), latency);
+        }
+    }
+
+    // Measures incremental hashing plus a probe and a store per step, every thread replaying the same games into one table
+    static void transpositionThroughput() throws InterruptedException {
+        int ticks = 2_000_000; // Steps per thread
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("TranspositionTable probes (1M slots, solver games on 16x16)");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            TranspositionTable table = new TranspositionTable(1 << 20);
+            AtomicLong hits = new AtomicLong();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    Game game = GameFactory.createGame(BoardFactory.createBoard(16), 3, 42);
+                    HamiltonianSolver solver = new HamiltonianSolver(game.getBoard());
+                    long found = 0;
+                    for (int tick = 0; tick < ticks; tick++) {
+                        if (game.isOver()) {
+                            game = GameFactory.createGame(game.getBoard(), 3, 42);
+                        }
+                        game.step(solver.next(game));
+                        if (table.get(game.getHash(), -1) >= 0) {
+                            found++; // Seen before by this thread or another one
+                        }
+                        table.put(game.getHash(), game.getTick());
+                    }
+                    hits.addAndGet(found);
+                    return null;
+                });
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            pool.invokeAll(tasks);
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.printf("  %2d threads: %,14.0f steps/s, %.1f%% hits%n", threads,
+                    (double) threads * ticks * 1e9 / elapsed, 100.0 * hits.get() / ((long) threads * ticks));
+        }
+    }
+
+    // Grows an off-heap snake to 16M segments on a 20000x20000 board, then times moves and counts heap activity
+    static void offHeapLongSnake() {
+        int size = 20_000; // 400M cells, a 50 MB bitmap and no per-cell heap tables
+        long target = 1 << 24;
+        try (OffHeapGame game = new OffHeapGame(size, 1, 42)) {
+            long collections = collectionCount();
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            while (game.getLength() < target) {
+                game.step(cycleMove(game.getHeadCell(), size)); // The wrapped board's Hamiltonian cycle, see HamiltonianSolver
+                game.grow();
+            }
+            long grown = System.nanoTime() - start;
+            int moves = 10_000_000;
+            start = System.nanoTime();
+            for (int i = 0; i < moves && !game.isOver(); i++) {
+                game.step(cycleMove(game.getHeadCell(), size));
+            }
+            long moved = System.nanoTime() - start;
+            System.out.printf("OffHeapGame on %dx%d: grown to %,d segments in %.1f s, %.1f ns/move at that length, "
+                            + "%,d bytes allocated on heap, %d collections%n",
+                    size, size, game.getLength(), grown / 1e9, (double) moved / moves,
+                    THREADS.getCurrentThreadAllocatedBytes() - before, collectionCount() - collections);
+        }
+    }
+
+    // Move along the wrapped board's Hamiltonian cycle from a cell, for boards too large for a Board
+    private static Direction cycleMove(long cell, int size) {
+        return (cell % size + cell / size) % size == size - 1 ? Direction.DOWN : Direction.RIGHT;
+    }
+
+    // Collections run so far by every garbage collector
+    private static long collectionCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(bean -> Math.max(0, bean.getCollectionCount()))
+                .sum();
+    }
+
+    // Entry point for the scenarios, pass scenario names to run a subset
+    public static void main(String[] args) throws InterruptedException, IOException {
+        List<String> selected = Arrays.asList(args);
+        if (selected.isEmpty() || selected.contains("registry")) {
+            registryThroughput();
+        }
+        if (selected.isEmpty() || selected.contains("realtime")) {
+            realTimeJitter();
+        }
+        if (selected.isEmpty() || selected.contains("batch")) {
+            batchThroughput();
+        }
+        if (selected.isEmpty() || selected.contains("autopilot")) {
+            autopilotDecisions();
+        }
+        if (selected.isEmpty() || selected.contains("solver")) {
+            solverToFullBoard();
+        }
+        if (selected.isEmpty() || selected.contains("mcts")) {
+            monteCarloThroughput();
+        }
+        if (selected.isEmpty() || selected.contains("transposition")) {
+            transpositionThroughput();
+        }
+        if (selected.isEmpty() || selected.contains("offheap")) {
+            offHeapLongSnake();
+        }
+        if (selected.isEmpty() || selected.contains("snapshot")) {
+            snapshotRoundTrip();
+        }
+        if (selected.isEmpty() || selected.contains("replay")) {
+            replayThroughput();
+            replaySeekLatency();
+        }
+    }
+}
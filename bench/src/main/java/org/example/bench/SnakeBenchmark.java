@@ -0,0 +1,83 @@
+package org.example.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.example.Main.Board;
+import org.example.Main.BoardFactory;
+import org.example.Main.Direction;
+import org.example.Main.MoveResult;
+import org.example.Main.Snake;
+import org.example.Main.SnakeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeBenchmark {
+    private static final int GROWS = 1024; // Grows per invocation, keeps the reset check out of the per-grow cost
+    private static final int MAX_GROWN = 1 << 20; // Body length at which the growing snake is replaced
+
+    @Param({"10", "63", "64", "65", "512", "4096"}) // 63 to 65 straddle the switch from bitboards to BitSets
+    public int boardSize;
+
+    @Param({"3", "board"}) // "board" makes the snake as long as the board is wide
+    public String length;
+
+    private Board board; // Shared by every snake of the trial
+    private Snake moving; // Moves right forever, the body never covers more than one row ahead
+    private Snake colliding; // Only ever turns back into its neck
+    private Snake growing; // Grows at the tail, reset outside the timed region
+    private Snake pristine; // State the growing snake is reset to
+
+    // Builds the snakes once per parameter combination
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = BoardFactory.createBoard(boardSize);
+        int segments = length.equals("board") ? boardSize : Integer.parseInt(length);
+        moving = SnakeFactory.createSnake(segments, board);
+        colliding = SnakeFactory.createSnake(Math.max(2, segments), board);
+        growing = SnakeFactory.createSnake(segments, board);
+        pristine = SnakeFactory.createSnake(segments, board);
+    }
+
+    // Copies the growing snake back to its start before its body gets unreasonably long, never timed
+    @Setup(Level.Invocation)
+    public void resetGrowing() {
+        if (growing.getLength() >= MAX_GROWN) {
+            growing.copyFrom(pristine); // Keeps the grown ring buffer, so later grows allocate nothing
+        }
+    }
+
+    @Benchmark
+    public void move() {
+        moving.move(Direction.RIGHT);
+    }
+
+    // The head sits at the bottom of column 0 with its neck above, so UP always dies and changes nothing
+    @Benchmark
+    public MoveResult collision() {
+        return colliding.tryMove(Direction.UP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROWS)
+    public void grow() {
+        for (int i = 0; i < GROWS; i++) {
+            growing.grow();
+        }
+    }
+}